@@ -0,0 +1,86 @@
+package com.igorb.desktopexperience;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntPredicate;
+
+/**
+ * Forces boolean fields of freshly constructed state objects. The {@link Field}s are resolved once, when the
+ * patcher is built for a class; {@link #apply} is then a single loop of setBoolean calls with no lookups and
+ * no logging, meant to run from a constructor hook on every construction.
+ */
+final class ConstructorFieldPatcher {
+    /** Told once per field that cannot be resolved; such fields are left out of every later {@link #apply}. */
+    interface UnresolvedFieldHandler {
+        void onUnresolved(String fieldName, Throwable t);
+    }
+
+    private final Field[] fields;
+    private final boolean[] values;
+    private final int[] overrideBits;
+
+    private ConstructorFieldPatcher(Field[] fields, boolean[] values, int[] overrideBits) {
+        this.fields = fields;
+        this.values = values;
+        this.overrideBits = overrideBits;
+    }
+
+    /**
+     * Resolves the named boolean fields of {@code clazz} (declared there or inherited). {@code trueBits}
+     * and {@code falseBits} are the OverrideManifest bits of the names, in the same order.
+     */
+    static ConstructorFieldPatcher forClass(Class<?> clazz, String[] forceTrue, int[] trueBits, String[] forceFalse, int[] falseBits,
+                                            UnresolvedFieldHandler unresolved) {
+        List<Field> fields = new ArrayList<>();
+        List<Boolean> values = new ArrayList<>();
+        List<Integer> bits = new ArrayList<>();
+        for (int pass = 0; pass < 2; pass++) {
+            String[] names = pass == 0 ? forceTrue : forceFalse;
+            int[] namesBits = pass == 0 ? trueBits : falseBits;
+            for (int i = 0; i < names.length; i++) {
+                try {
+                    fields.add(resolve(clazz, names[i]));
+                    values.add(pass == 0);
+                    bits.add(namesBits[i]);
+                } catch (NoSuchFieldException | RuntimeException e) {
+                    unresolved.onUnresolved(names[i], e);
+                }
+            }
+        }
+        boolean[] valueArray = new boolean[values.size()];
+        int[] bitArray = new int[bits.size()];
+        for (int i = 0; i < valueArray.length; i++) {
+            valueArray[i] = values.get(i);
+            bitArray[i] = bits.get(i);
+        }
+        return new ConstructorFieldPatcher(fields.toArray(new Field[0]), valueArray, bitArray);
+    }
+
+    int size() {
+        return fields.length;
+    }
+
+    /** Writes every resolved field of {@code instance} whose override bit {@code enabled} accepts. */
+    void apply(Object instance, IntPredicate enabled) throws IllegalAccessException {
+        for (int i = 0; i < fields.length; i++) {
+            if (enabled.test(overrideBits[i])) fields[i].setBoolean(instance, values[i]);
+        }
+    }
+
+    private static Field resolve(Class<?> clazz, String name) throws NoSuchFieldException {
+        for (Class<?> c = clazz; c != null; c = c.getSuperclass()) {
+            try {
+                Field field = c.getDeclaredField(name);
+                if (field.getType() != boolean.class) {
+                    throw new IllegalArgumentException(c.getName() + "." + name + " is " + field.getType().getName() + ", not boolean");
+                }
+                field.setAccessible(true);
+                return field;
+            } catch (NoSuchFieldException ignored) {
+                // Keep looking in the superclass.
+            }
+        }
+        throw new NoSuchFieldException(clazz.getName() + "." + name);
+    }
+}
@@ -0,0 +1,44 @@
+package com.igorb.desktopexperience;
+
+import java.util.Arrays;
+
+/**
+ * Immutable ordinal-indexed lookup from an enum flag constant to its forced value.
+ * Holds the same packed entries as {@link FlagOverrideTable} so both kinds of table read the same way in the hooks.
+ * A table is bound to the enum class of its first constant.
+ */
+final class EnumFlagOverrideTable {
+    static final EnumFlagOverrideTable EMPTY = new EnumFlagOverrideTable(null, new int[0]);
+
+    private final Class<?> enumClass;
+    private final int[] entriesByOrdinal;
+
+    private EnumFlagOverrideTable(Class<?> enumClass, int[] entriesByOrdinal) {
+        this.enumClass = enumClass;
+        this.entriesByOrdinal = entriesByOrdinal;
+    }
+
+    /** Returns the packed entry of {@code instance}, or {@link FlagOverrideTable#NONE} if it is not forced. */
+    int entry(Object instance) {
+        if (!(instance instanceof Enum)) return FlagOverrideTable.NONE;
+        Enum<?> constant = (Enum<?>) instance;
+        int ordinal = constant.ordinal();
+        if (ordinal >= entriesByOrdinal.length || constant.getDeclaringClass() != enumClass) return FlagOverrideTable.NONE;
+        return entriesByOrdinal[ordinal];
+    }
+
+    /** Returns a copy of this table with {@code constant} forced to {@code value}; this table is left untouched. */
+    EnumFlagOverrideTable with(Object constant, boolean value, int overrideBit) {
+        if (!(constant instanceof Enum)) throw new IllegalArgumentException("not an enum constant: " + constant);
+        Enum<?> flag = (Enum<?>) constant;
+        Class<?> flagClass = flag.getDeclaringClass();
+        if (enumClass != null && enumClass != flagClass) {
+            throw new IllegalArgumentException("table already holds " + enumClass.getName() + ", got " + flagClass.getName());
+        }
+        int entry = FlagOverrideTable.pack(value, overrideBit);
+        if (entry(flag) == entry) return this;
+        int[] copy = Arrays.copyOf(entriesByOrdinal, Math.max(entriesByOrdinal.length, flag.ordinal() + 1));
+        copy[flag.ordinal()] = entry;
+        return new EnumFlagOverrideTable(flagClass, copy);
+    }
+}
@@ -0,0 +1,39 @@
+package com.igorb.desktopexperience;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Reverse index from a cached flag instance to the static field name it was read from.
+ * Filled when the hooks cache their flag instances so the hot path never needs reflection to name a flag.
+ * Copy-on-write: readers use the published map without locking; it holds the same instances the override tables do.
+ */
+final class FlagNameIndex {
+    private final Object lock = new Object();
+    private volatile Map<Object, String> names = new IdentityHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    void put(Object instance, String name) {
+        if (instance == null) return;
+        synchronized (lock) {
+            if (name.equals(names.get(instance))) return;
+            Map<Object, String> copy = new IdentityHashMap<>(names);
+            copy.put(instance, name);
+            names = copy;
+        }
+    }
+
+    /** Returns the indexed name, or null (counted as a miss) if the instance was never indexed. */
+    String get(Object instance) {
+        String name = names.get(instance);
+        if (name != null) hits.increment();
+        else misses.increment();
+        return name;
+    }
+
+    long hitCount() { return hits.sum(); }
+
+    long missCount() { return misses.sum(); }
+}
@@ -0,0 +1,88 @@
+package com.igorb.desktopexperience;
+
+import java.util.Arrays;
+
+/**
+ * Immutable identity-keyed lookup from a flag instance to its forced value.
+ * Instances are only ever published whole, so readers on any thread can use a table without locking.
+ * Flag instances are held strongly: the isTrue() hooks and FlagStatePatcher pin their classes for the life of the
+ * process anyway. Each entry packs the flag's OverrideManifest bit with its state, so a hook reads both from one
+ * probe and an {@link OverrideProfile} can switch the flag off.
+ */
+final class FlagOverrideTable {
+    static final int NONE = 0;
+    static final int FORCE_TRUE = 1;
+    static final int FORCE_FALSE = 2;
+
+    static final FlagOverrideTable EMPTY = new FlagOverrideTable(new Object[0], new int[0]);
+
+    // --- Open-addressed, linear-probed slots; length is always a power of two (or zero when empty) ---
+    private final Object[] keys;
+    private final int[] entries;
+    private final int mask;
+    private final int size;
+
+    private FlagOverrideTable(Object[] entryKeys, int[] entryValues) {
+        int capacity = entryKeys.length == 0 ? 0 : Integer.highestOneBit(entryKeys.length * 4 - 1) << 1;
+        keys = new Object[capacity];
+        entries = new int[capacity];
+        mask = capacity - 1;
+        size = entryKeys.length;
+        for (int e = 0; e < entryKeys.length; e++) {
+            int i = slot(entryKeys[e]);
+            while (keys[i] != null) i = (i + 1) & mask;
+            keys[i] = entryKeys[e];
+            entries[i] = entryValues[e];
+        }
+    }
+
+    private int slot(Object instance) {
+        int hash = System.identityHashCode(instance);
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    /** Returns the packed entry of {@code instance}, or {@link #NONE} if it is not forced; see {@link #stateOf} and {@link #bitOf}. */
+    int entry(Object instance) {
+        if (mask < 0 || instance == null) return NONE;
+        int i = slot(instance);
+        Object key;
+        while ((key = keys[i]) != null) {
+            if (key == instance) return entries[i];
+            i = (i + 1) & mask;
+        }
+        return NONE;
+    }
+
+    /** {@link #NONE}, {@link #FORCE_TRUE} or {@link #FORCE_FALSE}. */
+    static int stateOf(int entry) {
+        return entry & 3;
+    }
+
+    /** The OverrideManifest bit of a forced entry. */
+    static int bitOf(int entry) {
+        return entry >>> 2;
+    }
+
+    static int pack(boolean value, int overrideBit) {
+        if (overrideBit < 0) throw new IllegalArgumentException("negative override bit " + overrideBit);
+        return overrideBit << 2 | (value ? FORCE_TRUE : FORCE_FALSE);
+    }
+
+    /** Returns a copy of this table with {@code instance} forced to {@code value}; this table is left untouched. */
+    FlagOverrideTable with(Object instance, boolean value, int overrideBit) {
+        if (instance == null) throw new IllegalArgumentException("flag instance is null");
+        int entry = pack(value, overrideBit);
+        if (entry(instance) == entry) return this;
+        Object[] entryKeys = new Object[size + 1];
+        int[] entryValues = new int[size + 1];
+        int n = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] == null || keys[i] == instance) continue;
+            entryKeys[n] = keys[i];
+            entryValues[n++] = entries[i];
+        }
+        entryKeys[n] = instance;
+        entryValues[n++] = entry;
+        return new FlagOverrideTable(Arrays.copyOf(entryKeys, n), Arrays.copyOf(entryValues, n));
+    }
+}
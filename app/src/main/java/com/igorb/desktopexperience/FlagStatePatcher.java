@@ -0,0 +1,103 @@
+package com.igorb.desktopexperience;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Bakes a forced value into a flag instance once, so its own isTrue() returns it without any hook.
+ * The flag's {@link #FIELD_FLAG_FUNCTION} is swapped for a constant and then its {@link #FIELD_OVERRIDE_BY_DEV_OPTION}
+ * switch is turned off, so a concurrent reader sees the natural value or the forced one and nothing in between.
+ * A probe function checks that isTrue() really consults the swapped function; if it does not, or either field is
+ * missing, the instance is rolled back and the caller keeps its isTrue() callback.
+ */
+final class FlagStatePatcher {
+    static final String FIELD_FLAG_FUNCTION = "mFlagFunction";
+    static final String FIELD_OVERRIDE_BY_DEV_OPTION = "mShouldOverrideByDevOption";
+
+    private FlagStatePatcher() {}
+
+    /** Constant flag function; bumps the hit counter (if any) so stats still see every read. */
+    private static final class ConstantSupplier implements BooleanSupplier {
+        private final boolean value;
+        private final HookStats.Counter counter;
+
+        ConstantSupplier(boolean value, HookStats.Counter counter) {
+            this.value = value;
+            this.counter = counter;
+        }
+
+        @Override
+        public boolean getAsBoolean() {
+            if (counter != null) counter.increment();
+            return value;
+        }
+    }
+
+    /** Returns the forced value and records whether the patching thread itself asked for it. */
+    private static final class Probe implements BooleanSupplier {
+        private final boolean value;
+        private final Thread owner = Thread.currentThread();
+        private volatile boolean consulted;
+
+        Probe(boolean value) {
+            this.value = value;
+        }
+
+        @Override
+        public boolean getAsBoolean() {
+            if (Thread.currentThread() == owner) consulted = true;
+            return value;
+        }
+    }
+
+    /**
+     * Returns true if {@code flag.isTrue()} now returns {@code value} with no hook installed.
+     * On false the instance is left exactly as it was and the caller must keep its isTrue callback.
+     */
+    static boolean patch(Object flag, boolean value, HookStats.Counter counter) throws ReflectiveOperationException {
+        Field function = findField(flag.getClass(), FIELD_FLAG_FUNCTION, BooleanSupplier.class);
+        Field devOptionSwitch = findField(flag.getClass(), FIELD_OVERRIDE_BY_DEV_OPTION, boolean.class);
+        if (function == null || devOptionSwitch == null) return false;
+
+        Object savedFunction = function.get(flag);
+        boolean savedSwitch = devOptionSwitch.getBoolean(flag);
+        Probe probe = new Probe(value);
+        function.set(flag, probe);
+        devOptionSwitch.setBoolean(flag, false);
+
+        boolean verified;
+        try {
+            // A flag that caches its value, or reads something else, would pass a value check whenever the
+            // forced value happens to be the natural one; the probe shows the function was actually called.
+            Object result = flag.getClass().getMethod("isTrue").invoke(flag);
+            verified = probe.consulted && Boolean.valueOf(value).equals(result);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            verified = false;
+        }
+        if (verified) {
+            // Counting only starts after the verification read, so the probe is not reported as a hit.
+            function.set(flag, new ConstantSupplier(value, counter));
+            return true;
+        }
+
+        devOptionSwitch.setBoolean(flag, savedSwitch);
+        function.set(flag, savedFunction);
+        return false;
+    }
+
+    /** Returns the accessible instance field {@code name} of {@code type}, declared on the flag's class or a superclass, or null. */
+    private static Field findField(Class<?> clazz, String name, Class<?> type) {
+        for (Class<?> c = clazz; c != null && c != Object.class && c != Enum.class; c = c.getSuperclass()) {
+            try {
+                Field field = c.getDeclaredField(name);
+                if (field.getType() != type || Modifier.isStatic(field.getModifiers())) return null;
+                field.setAccessible(true);
+                return field;
+            } catch (NoSuchFieldException ignored) {
+                // Keep looking in the superclass.
+            }
+        }
+        return null;
+    }
+}
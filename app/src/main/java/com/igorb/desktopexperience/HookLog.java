@@ -0,0 +1,215 @@
+package com.igorb.desktopexperience;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Asynchronous, rate-limited log pipeline for the hooks.
+ * Producers only touch a bounded lock-free ring; formatting and sink I/O happen on the drain thread.
+ * Repeated forced reads of the same flag are not logged individually: the drain thread reports the growth of the
+ * {@link HookStats} counters as one summary line per interval.
+ * The drain thread only exists once {@link #start} is called above {@link #LEVEL_OFF}; it parks until a producer
+ * unparks it, or until the next summary is due.
+ */
+final class HookLog {
+    static final int LEVEL_OFF = 0;
+    static final int LEVEL_ERROR = 1;
+    static final int LEVEL_INFO = 2;
+    static final int LEVEL_VERBOSE = 3;
+
+    /** Longest text handed to the sink in one call: logcat truncates entries at about 4 KB, and a char can take 3 bytes. */
+    static final int MAX_SINK_CHARS = 1024;
+
+    /** Destination for drained log entries, called only from the drain thread (or from {@link #drain}). */
+    interface Sink {
+        void log(String message);
+        void log(Throwable t);
+    }
+
+    private final String tag;
+    private final Sink sink;
+    private final long summaryIntervalNanos;
+    private volatile int level = LEVEL_INFO;
+
+    // --- Bounded MPSC ring: producers claim slots via CAS on tail, only the drain side advances head ---
+    private final AtomicReferenceArray<Object> slots;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head;
+    private final LongAdder dropped = new LongAdder();
+
+    // --- Repeat summaries, computed from the stats counters once per interval (drain side only) ---
+    private final HookStats stats;
+    private final Map<HookStats.Counter, Long> reportedHits = new IdentityHashMap<>();
+    private long lastSummaryNanos = System.nanoTime();
+    private long reportedDropped;
+    private volatile Runnable periodicTask;
+
+    // --- Drain thread; producers unpark it only when it announced it is about to park ---
+    private final Object startLock = new Object();
+    private final Object drainLock = new Object();
+    private final AtomicBoolean drainerParked = new AtomicBoolean();
+    private volatile Thread drainThread;
+
+    HookLog(String tag, Sink sink, HookStats stats, int capacity, long summaryIntervalMillis) {
+        if (Integer.bitCount(capacity) != 1) throw new IllegalArgumentException("capacity must be a power of two: " + capacity);
+        this.tag = tag;
+        this.sink = sink;
+        this.stats = stats;
+        this.summaryIntervalNanos = TimeUnit.MILLISECONDS.toNanos(summaryIntervalMillis);
+        this.slots = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+    }
+
+    void setLevel(int level) { this.level = level; }
+
+    /** Parses a level given as {@code off}, {@code error}, {@code info}, {@code verbose} or its number; anything else yields {@code fallback}. */
+    static int parseLevel(String value, int fallback) {
+        if (value == null) return fallback;
+        switch (value.trim().toLowerCase(Locale.ROOT)) {
+            case "off": case "0": return LEVEL_OFF;
+            case "error": case "1": return LEVEL_ERROR;
+            case "info": case "2": return LEVEL_INFO;
+            case "verbose": case "3": return LEVEL_VERBOSE;
+            default: return fallback;
+        }
+    }
+
+    boolean isLoggable(int level) { return level <= this.level; }
+
+    void error(String message, Throwable t) {
+        if (!isLoggable(LEVEL_ERROR)) return;
+        offer(message);
+        if (t != null) offer(t);
+    }
+
+    void info(String message) {
+        if (isLoggable(LEVEL_INFO)) offer(message);
+    }
+
+    /** Callers should guard message construction with {@code isLoggable(LEVEL_VERBOSE)}. */
+    void verbose(String message) {
+        if (isLoggable(LEVEL_VERBOSE)) offer(message);
+    }
+
+    /**
+     * Writes {@code text} straight to the sink whatever the level, as numbered parts of at most {@link #MAX_SINK_CHARS}
+     * chars that concatenate back to it. For output that was explicitly asked for; call only from the drain thread,
+     * e.g. from the periodic task.
+     */
+    void writeInParts(String label, String text) {
+        List<String> parts = new ArrayList<>();
+        for (int start = 0; start < text.length(); ) {
+            int end = Math.min(text.length(), start + MAX_SINK_CHARS);
+            if (end < text.length() && Character.isHighSurrogate(text.charAt(end - 1))) end--;
+            parts.add(text.substring(start, end));
+            start = end;
+        }
+        for (int i = 0; i < parts.size(); i++) sink.log(tag + ": " + label + " " + (i + 1) + "/" + parts.size() + " " + parts.get(i));
+    }
+
+    /** Runs {@code task} on the drain thread once per summary interval, e.g. to poll a dump trigger. */
+    void setPeriodicTask(Runnable task) { this.periodicTask = task; }
+
+    long droppedCount() { return dropped.sum(); }
+
+    /** Starts the drain thread, unless it is already running or the level is {@link #LEVEL_OFF}. */
+    void start() {
+        if (level == LEVEL_OFF) return;
+        synchronized (startLock) {
+            if (drainThread != null) return;
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    while (true) {
+                        try { drain(); } catch (Throwable ignored) {}
+                        awaitEntries();
+                    }
+                }
+            }, tag + "-log");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            drainThread = thread;
+            thread.start();
+        }
+    }
+
+    /** Parks the drain thread until an entry is offered, or until the next summary or periodic task is due. */
+    private void awaitEntries() {
+        drainerParked.set(true);
+        if (head != tail.get()) {
+            // Entries arrived since the drain, or a producer has claimed a slot it has not filled yet.
+            drainerParked.set(false);
+            Thread.yield();
+            return;
+        }
+        if (isLoggable(LEVEL_INFO) || periodicTask != null) LockSupport.parkNanos(this, summaryIntervalNanos);
+        else LockSupport.park(this);
+        drainerParked.set(false);
+    }
+
+    /** Writes all queued entries to the sink, plus the repeat summaries when the interval has elapsed. Single consumer only. */
+    void drain() {
+        synchronized (drainLock) {
+            drainEntries();
+        }
+    }
+
+    private void drainEntries() {
+        long h = head;
+        while (h < tail.get()) {
+            int index = (int) (h & mask);
+            Object entry = slots.get(index);
+            if (entry == null) break; // Slot claimed but not yet filled; pick it up next round.
+            slots.lazySet(index, null);
+            head = ++h;
+            if (entry instanceof Throwable) sink.log((Throwable) entry);
+            else sink.log(tag + ": " + entry);
+        }
+        long now = System.nanoTime();
+        if (now - lastSummaryNanos >= summaryIntervalNanos) {
+            long seconds = TimeUnit.NANOSECONDS.toSeconds(now - lastSummaryNanos);
+            lastSummaryNanos = now;
+            if (isLoggable(LEVEL_INFO)) summarize(seconds);
+            long totalDropped = dropped.sum();
+            if (totalDropped != reportedDropped) {
+                sink.log(tag + ": Dropped " + (totalDropped - reportedDropped) + " log entries (buffer full)");
+                reportedDropped = totalDropped;
+            }
+            Runnable task = periodicTask;
+            if (task != null) task.run();
+        }
+    }
+
+    private void summarize(long seconds) {
+        for (int action = 0; action < stats.actionCount(); action++) {
+            for (HookStats.Counter counter : stats.counters(action)) {
+                long total = counter.sum();
+                Long reported = reportedHits.put(counter, total);
+                long hits = total - (reported == null ? 0 : reported);
+                if (hits > 0) sink.log(String.format(Locale.ROOT, "%s: %s %s \u00d7%,d in last %ds", tag, counter.name, counter.action, hits, seconds));
+            }
+        }
+    }
+
+    private void offer(Object entry) {
+        while (true) {
+            long t = tail.get();
+            if (t - head >= slots.length()) { dropped.increment(); return; }
+            if (tail.compareAndSet(t, t + 1)) {
+                slots.lazySet((int) (t & mask), entry);
+                if (drainerParked.get() && drainerParked.compareAndSet(true, false)) LockSupport.unpark(drainThread);
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.igorb.desktopexperience;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-process hit counters for every overridden flag, method and property key, plus sampled
+ * latency histograms of the hook callbacks. All hot-path updates go to striped LongAdders.
+ */
+final class HookStats {
+    static final int FORCED_TRUE = 0;
+    static final int FORCED_FALSE = 1;
+    static final int OVERRIDDEN = 2;
+    static final int REPLACED = 3;
+    private static final String[] ACTION_NAMES = {"forced true", "forced false", "overridden", "replaced"};
+
+    /** Hit counter for one (action, name) pair; resolve it once at hook time where the name is static. */
+    static final class Counter {
+        final String action;
+        final String name;
+        private final LongAdder hits = new LongAdder();
+
+        private Counter(String action, String name) {
+            this.action = action;
+            this.name = name;
+        }
+
+        void increment() { hits.increment(); }
+
+        long sum() { return hits.sum(); }
+    }
+
+    /** Log2-bucketed nanosecond histogram; bucket i counts samples in [2^i, 2^(i+1)) ns. */
+    static final class LatencyHistogram {
+        private static final int BUCKETS = 40;
+        final String name;
+        private final int sampleMask;
+        private final LongAdder[] buckets = new LongAdder[BUCKETS];
+
+        private LatencyHistogram(String name, int sampleMask) {
+            this.name = name;
+            this.sampleMask = sampleMask;
+            for (int i = 0; i < BUCKETS; i++) buckets[i] = new LongAdder();
+        }
+
+        /** Returns a start timestamp for a sampled call, or 0 if this call is not sampled. */
+        long start() {
+            if (sampleMask < 0 || (ThreadLocalRandom.current().nextInt() & sampleMask) != 0) return 0;
+            return System.nanoTime();
+        }
+
+        void stop(long start) {
+            if (start == 0) return;
+            long elapsed = System.nanoTime() - start;
+            int bucket = elapsed <= 1 ? 0 : 63 - Long.numberOfLeadingZeros(elapsed);
+            buckets[Math.min(bucket, BUCKETS - 1)].increment();
+        }
+    }
+
+    private volatile boolean enabled;
+    private final int sampleMask;
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private final ConcurrentHashMap<String, Counter>[] counters = new ConcurrentHashMap[ACTION_NAMES.length];
+    private final ConcurrentHashMap<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+
+    /**
+     * @param sampleEvery record the latency of roughly one call in {@code sampleEvery} (a power of two), or 0 to disable sampling
+     */
+    HookStats(boolean enabled, int sampleEvery) {
+        if (sampleEvery != 0 && Integer.bitCount(sampleEvery) != 1) throw new IllegalArgumentException("sampleEvery must be a power of two: " + sampleEvery);
+        this.enabled = enabled;
+        this.sampleMask = sampleEvery != 0 ? sampleEvery - 1 : -1;
+        for (int i = 0; i < counters.length; i++) counters[i] = new ConcurrentHashMap<>();
+    }
+
+    /** Callers resolve counters and histograms only while enabled; {@link #hit} checks it on every call. */
+    boolean isEnabled() { return enabled; }
+
+    void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+    Counter counter(int action, String name) {
+        ConcurrentHashMap<String, Counter> byName = counters[action];
+        Counter counter = byName.get(name);
+        if (counter == null) {
+            Counter created = new Counter(ACTION_NAMES[action], name);
+            counter = byName.putIfAbsent(name, created);
+            if (counter == null) counter = created;
+        }
+        return counter;
+    }
+
+    /** Counts one hit for a name only known at call time; allocation-free once the name has been seen. */
+    void hit(int action, String name) {
+        if (enabled) counter(action, name).increment();
+    }
+
+    LatencyHistogram histogram(String name) {
+        LatencyHistogram histogram = histograms.get(name);
+        if (histogram == null) {
+            LatencyHistogram created = new LatencyHistogram(name, sampleMask);
+            histogram = histograms.putIfAbsent(name, created);
+            if (histogram == null) histogram = created;
+        }
+        return histogram;
+    }
+
+    Iterable<Counter> counters(int action) { return counters[action].values(); }
+
+    int actionCount() { return counters.length; }
+
+    /** Serializes a snapshot of every counter and histogram as a single-line JSON object. */
+    String toJson(String processName, Map<String, Long> extra) {
+        StringBuilder json = new StringBuilder(512);
+        json.append("{\"process\":");
+        appendString(json, processName);
+        json.append(",\"counters\":[");
+        boolean first = true;
+        for (ConcurrentHashMap<String, Counter> byName : counters) {
+            for (Counter counter : byName.values()) {
+                if (!first) json.append(',');
+                first = false;
+                json.append("{\"name\":");
+                appendString(json, counter.name);
+                json.append(",\"action\":");
+                appendString(json, counter.action);
+                json.append(",\"hits\":").append(counter.sum()).append('}');
+            }
+        }
+        json.append("],\"latencyLog2Ns\":{");
+        first = true;
+        for (LatencyHistogram histogram : histograms.values()) {
+            if (!first) json.append(',');
+            first = false;
+            appendString(json, histogram.name);
+            json.append(":[");
+            int last = LatencyHistogram.BUCKETS - 1;
+            while (last > 0 && histogram.buckets[last].sum() == 0) last--;
+            for (int i = 0; i <= last; i++) {
+                if (i > 0) json.append(',');
+                json.append(histogram.buckets[i].sum());
+            }
+            json.append(']');
+        }
+        json.append('}');
+        for (Map.Entry<String, Long> entry : extra.entrySet()) {
+            json.append(',');
+            appendString(json, entry.getKey());
+            json.append(':').append(entry.getValue());
+        }
+        return json.append('}').toString();
+    }
+
+    private static void appendString(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') json.append('\\').append(c);
+            else if (c < 0x20) json.append(String.format("\\u%04x", (int) c));
+            else json.append(c);
+        }
+        json.append('"');
+    }
+}
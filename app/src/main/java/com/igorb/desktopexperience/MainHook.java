@@ -1,12 +1,17 @@
 package com.igorb.desktopexperience;
 
-import android.content.Context;
-import android.view.Display;
-
+import java.io.File;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
 
 import de.robv.android.xposed.IXposedHookLoadPackage;
+import de.robv.android.xposed.XSharedPreferences;
 import de.robv.android.xposed.XC_MethodHook;
 import de.robv.android.xposed.XC_MethodReplacement;
 import de.robv.android.xposed.XposedBridge;
@@ -16,296 +21,385 @@ import de.robv.android.xposed.callbacks.XC_LoadPackage;
 public class MainHook implements IXposedHookLoadPackage {
     private static final String TAG = "DesktopModeEnabler";
 
-    // --- Target Classes ---
+    // --- Override targets: compiled from app/overrides.json into OverrideManifest.TARGETS at build time ---
     private static final String CLASS_SYSTEM_PROPERTIES = "android.os.SystemProperties";
-    private static final String CLASS_DESKTOP_MODE_STATUS = "com.android.wm.shell.shared.desktopmode.DesktopModeStatus";
-    private static final String CLASS_DESKTOP_STATE_IMPL = "com.android.wm.shell.shared.desktopmode.DesktopStateImpl";
-    private static final String CLASS_DESKTOP_EXPERIENCE_FLAGS = "android.window.DesktopExperienceFlags";
-    private static final String CLASS_DESKTOP_MODE_FLAGS_ENUM = "android.window.DesktopModeFlags";
-    private static final String CLASS_TASKBAR_DESKTOP_EXPERIENCE_FLAGS = "com.android.launcher3.taskbar.TaskbarDesktopExperienceFlags";
-    private static final String CLASS_DESKTOP_EXPERIENCE_FLAG_INNER = "android.window.DesktopExperienceFlags$DesktopExperienceFlag";
-    private static final String CLASS_TASKBAR_ACTIVITY_CONTEXT = "com.android.launcher3.taskbar.TaskbarActivityContext";
-
-
-    // --- Methods to force true in DesktopModeStatus ---
-    private static final String[] DMS_METHODS_TO_FORCE_TRUE = {
-            "isDesktopModeSupported", "isDesktopModeDevOptionSupported", "canShowDesktopModeDevOption",
-            "canShowDesktopExperienceDevOption", "shouldDevOptionBeEnabledByDefault",
-            "isDeviceEligibleForDesktopMode", "isDeviceEligibleForDesktopModeDevOption"
-    };
-
-    // --- Fields to modify in DesktopStateImpl constructor ---
-    private static final String[] DSI_FIELDS_TO_FORCE_TRUE_IN_CONSTRUCTOR = {
-            "canEnterDesktopMode", "enterDesktopByDefaultOnFreeformDisplay", "isDesktopModeSupported"
-    };
-    private static final String[] DSI_FIELDS_TO_FORCE_FALSE_IN_CONSTRUCTOR = {
-            "canInternalDisplayHostDesktops",
-            "enforceDeviceRestrictions"
-    };
-
-    // --- Static field names in DesktopExperienceFlags ---
-    private static final String[] DEF_FLAGS_FIELDS_TO_FORCE_TRUE = {
-            "ENABLE_PROJECTED_DISPLAY_DESKTOP_MODE",
-            "ENTER_DESKTOP_BY_DEFAULT_ON_FREEFORM_DISPLAYS",
-            "ENABLE_MULTIPLE_DESKTOPS_BACKEND",
-            "ENABLE_TASKBAR_CONNECTED_DISPLAYS"
-    };
-    private static final String[] DEF_FLAGS_FIELDS_TO_FORCE_FALSE = {
-            "ENABLE_MULTIPLE_DESKTOPS_FRONTEND"
-    };
-    private static final Set<Object> sTargetDesktopExperienceFlagInstancesToForceTrue = new HashSet<>();
-    private static final Set<Object> sTargetDesktopExperienceFlagInstancesToForceFalse = new HashSet<>();
-    private static final Set<String> sInitializedPackagesForDefFlags = new HashSet<>();
-
-
-    // --- Static field names in DesktopModeFlags (enum) to force true ---
-    private static final String[] DMF_ENUM_FIELDS_TO_FORCE_TRUE = {
-            "ENABLE_DESKTOP_CLOSE_SHORTCUT_BUGFIX", "ENABLE_TASKBAR_OVERFLOW",
-            "ENABLE_TASKBAR_RECENTS_LAYOUT_TRANSITION", "PRESERVE_RECENTS_TASK_CONFIGURATION_ON_RELAUNCH"
-    };
-    private static final Set<Object> sTargetDesktopModeEnumFlagInstances = new HashSet<>();
-    private static final Set<String> sInitializedPackagesForDmfEnumFlags = new HashSet<>();
-
-    // --- Static field names in TaskbarDesktopExperienceFlags to force true ---
-    private static final String[] TDEF_FLAGS_FIELDS_TO_FORCE_TRUE = {
-            "enableAltTabKqsOnConnectedDisplays",
-            "enableAltTabKqsFlatenning"
-    };
-    private static final Set<Object> sTargetTaskbarDesktopExperienceFlagInstances = new HashSet<>();
-    private static final Set<String> sInitializedPackagesForTdefFlags = new HashSet<>();
-
-
-    // --- Target System Property ---
-    // The value of this property will be forced to FALSE
-    private static final String PROP_ENFORCE_DEVICE_RESTRICTIONS = "persist.wm.debug.desktop_mode_enforce_device_restrictions";
-
-    // --- Target Packages ---
-    private static final String PACKAGE_SETTINGS = "com.android.settings";
-    private static final String PACKAGE_PIXEL_LAUNCHER = "com.google.android.apps.nexuslauncher";
-    private static final String PACKAGE_SYSTEMUI = "com.android.systemui";
-    private static final String PACKAGE_ANDROID_FRAMEWORK = "android";
-    private static final String PACKAGE_SYSTEM = "system";
-    private static final String PACKAGE_ANDROID_SHELL = "com.android.shell";
+    private static final TargetClaims sTargetClaims = new TargetClaims();
+
+    // --- One isTrue() hook per flag method; FLAG_FIELDS targets publish their instances into it ---
+    private static final Map<Method, FlagIsTrueHook> sFlagHooks = new HashMap<>();
+
+    // --- Instance -> field name for every cached flag, so logging never has to reflect on the hot path ---
+    private static final FlagNameIndex sFlagNames = new FlagNameIndex();
+
+    // --- Flag dispatch ---
+    // CONSTANT bakes each forced value into its flag instance once, so isTrue() is only hooked when some target could not
+    // be patched and untouched flags run unhooked. CALLBACK routes every isTrue() call through a table lookup.
+    // `adb shell setprop debug.desktop_experience.flag_dispatch callback|constant` applies from the next process start.
+    private static final int FLAG_DISPATCH_CALLBACK = 0;
+    private static final int FLAG_DISPATCH_CONSTANT = 1;
+    static final String PROP_FLAG_DISPATCH = "debug.desktop_experience.flag_dispatch";
+    private static volatile int sFlagDispatchMode = FLAG_DISPATCH_CONSTANT;
+
+    // --- Override profile ---
+    // If the profile exists when a process starts, each override checks its bit there on every call, so overrides can be
+    // switched off and back on without a reboot (see OverrideProfileReceiver). Flags then fall back to CALLBACK dispatch.
+    // It sits next to the module's shared preferences, which LSPosed keeps readable by every hooked process.
+    private static final String MODULE_PACKAGE = "com.igorb.desktopexperience";
+    private static final Object sProfileLock = new Object();
+    private static boolean sProfileOpened;
+    private static volatile OverrideProfile sProfile;
 
+    // --- Stats ---
+    // Hit counters per override (named as in OverrideManifest.OVERRIDE_NAMES for methods), and isTrue() hook latency sampled
+    // on 1 in LATENCY_SAMPLE_EVERY forced reads. Misses are never sampled, neither in isTrue() nor in the SystemProperties
+    // getters: nearly every call there is a miss, and drawing the sample would cost more than the miss itself.
+    // `adb shell setprop debug.desktop_experience.stats off` turns counters, histograms and the dump off from the next
+    // process start.
+    // `adb shell setprop debug.desktop_experience.dump_stats <any new value>` logs a JSON snapshot from every hooked process,
+    // at any log level but off, in numbered parts short enough for logcat.
+    private static final String PROP_STATS = "debug.desktop_experience.stats";
+    private static final int LATENCY_SAMPLE_EVERY = 64;
+    private static final String PROP_DUMP_STATS = "debug.desktop_experience.dump_stats";
+    private static final HookStats sStats = new HookStats(true, LATENCY_SAMPLE_EVERY);
+    private static volatile String sProcessName = "unknown";
+
+    // --- Logging ---
+    // Forced reads are summarized every LOG_SUMMARY_INTERVAL_MS at INFO; LEVEL_VERBOSE also logs each read.
+    // `adb shell setprop debug.desktop_experience.log_level off|error|info|verbose` applies from the next process start;
+    // at off no log thread is started, which also disables the stats dump trigger.
+    private static final String PROP_LOG_LEVEL = "debug.desktop_experience.log_level";
+    private static final int DEFAULT_LOG_LEVEL = HookLog.LEVEL_INFO;
+    private static final int LOG_BUFFER_CAPACITY = 256;
+    private static final long LOG_SUMMARY_INTERVAL_MS = 10_000;
+    private static final HookLog sLog = new HookLog(TAG, new HookLog.Sink() {
+        @Override public void log(String message) { XposedBridge.log(message); }
+        @Override public void log(Throwable t) { XposedBridge.log(t); }
+    }, sStats, LOG_BUFFER_CAPACITY, LOG_SUMMARY_INTERVAL_MS);
+
+    // --- SystemProperties getters; the overridden keys come from OverrideManifest.*_PROPERTY_OVERRIDES ---
+    private static final Object sPropertyOverridesLock = new Object();
+    private static final PropertyOverrideHook sGetBooleanHook = new PropertyOverrideHook("getBoolean");
+    private static final PropertyOverrideHook sGetIntHook = new PropertyOverrideHook("getInt");
+    private static final PropertyOverrideHook sGetHook = new PropertyOverrideHook("get");
 
     @Override
     public void handleLoadPackage(XC_LoadPackage.LoadPackageParam lpparam) throws Throwable {
-        boolean isTargetPackage = lpparam.packageName.equals(PACKAGE_SETTINGS) ||
-                lpparam.packageName.equals(PACKAGE_PIXEL_LAUNCHER) ||
-                lpparam.packageName.equals(PACKAGE_SYSTEMUI) ||
-                lpparam.packageName.equals(PACKAGE_SYSTEM) ||
-                lpparam.packageName.equals(PACKAGE_ANDROID_FRAMEWORK) ||
-                lpparam.packageName.equals(PACKAGE_ANDROID_SHELL);
-
-        if (!isTargetPackage) {
+        final String packageName = lpparam.packageName;
+        final ClassLoader classLoader = lpparam.classLoader;
+        final int packageBit = OverrideManifest.packageBit(packageName);
+        if (((OverrideManifest.TARGET_PACKAGES | OverrideManifest.PROPERTY_PACKAGES) & packageBit) == 0) {
             return;
         }
-        XposedBridge.log(TAG + ": Found target package: " + lpparam.packageName);
+        if (lpparam.processName != null) sProcessName = lpparam.processName;
+        sLog.setLevel(HookLog.parseLevel(readProperty(classLoader, PROP_LOG_LEVEL), DEFAULT_LOG_LEVEL));
+        sFlagDispatchMode = "callback".equalsIgnoreCase(readProperty(classLoader, PROP_FLAG_DISPATCH)) ? FLAG_DISPATCH_CALLBACK : FLAG_DISPATCH_CONSTANT;
+        sStats.setEnabled(!"off".equalsIgnoreCase(readProperty(classLoader, PROP_STATS)));
+        if (sStats.isEnabled()) sLog.setPeriodicTask(new StatsDumpTrigger());
+        sLog.start();
+        sLog.info("Found target package: " + packageName);
+        openProfileOnce();
 
-        hookSystemProperties(lpparam.classLoader, lpparam.packageName);
-        hookDesktopModeStatus(lpparam.classLoader, lpparam.packageName);
-        hookDesktopStateImpl(lpparam.classLoader, lpparam.packageName);
-        hookDesktopExperienceFlags(lpparam.classLoader, lpparam.packageName);
-        hookDesktopModeFlagsEnum(lpparam.classLoader, lpparam.packageName);
+        StringBuilder timings = new StringBuilder();
+        long planStart = System.nanoTime();
+        if ((OverrideManifest.PROPERTY_PACKAGES & packageBit) != 0) {
+            long start = System.nanoTime();
+            hookSystemProperties(classLoader, packageName, packageBit);
+            appendTiming(timings, "SystemProperties", start);
+        }
+        for (OverrideTarget target : OverrideManifest.TARGETS) {
+            if (!target.appliesTo(packageBit)) continue;
+            long start = System.nanoTime();
+            installTarget(target, classLoader, packageName);
+            appendTiming(timings, target.id, start);
+        }
+        sLog.info("Hook timings for " + packageName + ": " + timings + "total " + formatMillis(System.nanoTime() - planStart));
+    }
+
+    /** Returns the trimmed value of {@code key}, or "" if it is unset or SystemProperties cannot be read. */
+    private static String readProperty(ClassLoader classLoader, String key) {
+        try {
+            Class<?> systemPropertiesClass = XposedHelpers.findClass(CLASS_SYSTEM_PROPERTIES, classLoader);
+            return ((String) XposedHelpers.callStaticMethod(systemPropertiesClass, "get", key, "")).trim();
+        } catch (Throwable t) {
+            return "";
+        }
+    }
 
-        if (lpparam.packageName.equals(PACKAGE_PIXEL_LAUNCHER)) {
-            hookTaskbarDesktopExperienceFlags(lpparam.classLoader, lpparam.packageName);
-            hookTaskbarActivityContext(lpparam.classLoader, lpparam.packageName);
+    private static void openProfileOnce() {
+        synchronized (sProfileLock) {
+            if (sProfileOpened) return;
+            sProfileOpened = true;
+            File file = null;
+            try {
+                File prefsDir = new XSharedPreferences(MODULE_PACKAGE, OverrideProfile.PREFS_NAME).getFile().getParentFile();
+                file = new File(prefsDir, OverrideProfile.FILE_NAME);
+                sProfile = OverrideProfile.open(file, OverrideManifest.OVERRIDE_NAMES);
+                if (sProfile != null) sLog.info("Using override profile " + file + " at generation " + sProfile.generation());
+            } catch (Throwable t) { sLog.error("Ignoring override profile " + file, t); }
         }
     }
 
-    private void hookSystemProperties(ClassLoader classLoader, String packageName) {
+    /** False only when an override profile is loaded and has {@code bit} switched off. */
+    private static boolean isOverrideEnabled(int bit) {
+        OverrideProfile profile = sProfile;
+        return profile == null || profile.isEnabled(bit);
+    }
+
+    private static void appendTiming(StringBuilder timings, String name, long startNanos) {
+        timings.append(name).append(' ').append(formatMillis(System.nanoTime() - startNanos)).append(", ");
+    }
+
+    private static String formatMillis(long nanos) {
+        return String.format(Locale.US, "%.2fms", nanos / 1_000_000.0);
+    }
+
+    private void hookSystemProperties(ClassLoader classLoader, String packageName, int packageBit) {
         try {
             Class<?> systemPropertiesClass = XposedHelpers.findClass(CLASS_SYSTEM_PROPERTIES, classLoader);
-            XposedHelpers.findAndHookMethod(systemPropertiesClass, "getBoolean", String.class, boolean.class,
-                    new XC_MethodHook() {
-                        @Override
-                        protected void beforeHookedMethod(MethodHookParam param) throws Throwable {
-                            String key = (String) param.args[0];
-                            if (PROP_ENFORCE_DEVICE_RESTRICTIONS.equals(key)) {
-                                param.setResult(false); // MODIFIED: Force to false
-                                XposedBridge.log(TAG + ": SystemProperties.getBoolean for " + PROP_ENFORCE_DEVICE_RESTRICTIONS + " forced to false in " + packageName);
-                            }
-                        }
-                    }
-            );
-            XposedBridge.log(TAG + ": Hooked SystemProperties.getBoolean in " + packageName);
+            // SystemProperties is a boot class, so each getter is hooked at most once per process and
+            // packages sharing a process (system/android) only extend the published tables.
+            synchronized (sPropertyOverridesLock) {
+                sGetBooleanHook.install(systemPropertiesClass, OverrideManifest.BOOLEAN_PROPERTY_OVERRIDES, packageName, packageBit, String.class, boolean.class);
+                sGetIntHook.install(systemPropertiesClass, OverrideManifest.INT_PROPERTY_OVERRIDES, packageName, packageBit, String.class, int.class);
+                sGetHook.install(systemPropertiesClass, OverrideManifest.STRING_PROPERTY_OVERRIDES, packageName, packageBit, String.class);
+                sGetHook.install(systemPropertiesClass, OverrideManifest.STRING_PROPERTY_OVERRIDES, packageName, packageBit, String.class, String.class);
+            }
         } catch (Throwable t) { logError("hookSystemProperties", packageName, t); }
     }
 
-    private void hookDesktopModeStatus(ClassLoader classLoader, String packageName) {
+    /** Forces the overridden keys of one SystemProperties getter; every other key is rejected by the table's length check. */
+    private static final class PropertyOverrideHook extends XC_MethodHook {
+        private final String methodName;
+        private final Set<String> hookedSignatures = new HashSet<>();
+        private volatile PropertyOverrideTable overrides = PropertyOverrideTable.EMPTY;
+
+        PropertyOverrideHook(String methodName) {
+            this.methodName = methodName;
+        }
+
+        void install(Class<?> systemPropertiesClass, PropertyOverrideTable.Entry[] entries, String packageName, int packageBit,
+                     Class<?>... parameterTypes) {
+            overrides = overrides.with(entries, packageBit);
+            if (overrides.isEmpty()) return; // Nothing read in this process: leave the getter unhooked.
+            String signature = methodName + parameterTypes.length;
+            if (!hookedSignatures.add(signature)) return;
+            Object[] parameterTypesAndCallback = new Object[parameterTypes.length + 1];
+            System.arraycopy(parameterTypes, 0, parameterTypesAndCallback, 0, parameterTypes.length);
+            parameterTypesAndCallback[parameterTypes.length] = this;
+            XposedHelpers.findAndHookMethod(systemPropertiesClass, methodName, parameterTypesAndCallback);
+            sLog.info("Hooked SystemProperties." + methodName + " in " + packageName);
+        }
+
+        @Override
+        protected void beforeHookedMethod(MethodHookParam param) throws Throwable {
+            PropertyOverrideTable.Entry entry = overrides.lookup((String) param.args[0]);
+            if (entry != null && isOverrideEnabled(entry.bit)) {
+                Object value = entry.value;
+                param.setResult(value);
+                if (value instanceof Boolean) sStats.hit((Boolean) value ? HookStats.FORCED_TRUE : HookStats.FORCED_FALSE, (String) param.args[0]);
+                else sStats.hit(HookStats.OVERRIDDEN, (String) param.args[0]);
+                if (sLog.isLoggable(HookLog.LEVEL_VERBOSE)) sLog.verbose("SystemProperties." + methodName + " for " + param.args[0] + " forced to " + value);
+            }
+        }
+    }
+
+    /** Installs one manifest target for {@code packageName}, unless it is already installed for the loader that defines its class. */
+    private void installTarget(OverrideTarget target, ClassLoader classLoader, String packageName) {
         try {
-            Class<?> desktopModeStatusClass = XposedHelpers.findClass(CLASS_DESKTOP_MODE_STATUS, classLoader);
-            for (String methodName : DMS_METHODS_TO_FORCE_TRUE) {
-                try {
-                    XposedHelpers.findAndHookMethod(desktopModeStatusClass, methodName, Context.class, XC_MethodReplacement.returnConstant(true));
-                } catch (Throwable t) { logError(CLASS_DESKTOP_MODE_STATUS + "#" + methodName, packageName, t); }
+            Class<?> targetClass = XposedHelpers.findClassIfExists(target.className, classLoader);
+            if (targetClass == null) { sLog.info(target.className + " not present in " + packageName + ", skipping " + target.id); return; }
+            if (!sTargetClaims.claim(targetClass, target.id)) { sLog.info(target.id + " already installed in this process, skipping for " + packageName); return; }
+            switch (target.kind) {
+                case OverrideTarget.METHOD: hookMethodsToConstants(targetClass, target, packageName); break;
+                case OverrideTarget.CONSTRUCTOR_FIELDS: hookConstructorFields(targetClass, target, packageName); break;
+                case OverrideTarget.FLAG_FIELDS: hookFlagFields(targetClass, target, packageName); break;
+                default: sLog.error("Unknown kind " + target.kind + " of " + target.id, null);
             }
+        } catch (Throwable t) { logError(target.id, packageName, t); }
+    }
+
+    private void hookMethodsToConstants(Class<?> clazz, OverrideTarget target, String packageName) {
+        hookMethodsToConstant(clazz, target.params, target.forceTrue, target.forceTrueBits, true, packageName);
+        hookMethodsToConstant(clazz, target.params, target.forceFalse, target.forceFalseBits, false, packageName);
+        sLog.info("Hooked " + (target.forceTrue.length + target.forceFalse.length) + " methods of " + clazz.getName() + " in " + packageName);
+    }
+
+    private void hookMethodsToConstant(Class<?> clazz, String[] parameterTypes, String[] methodNames, int[] overrideBits,
+                                       boolean value, String packageName) {
+        Object[] parameterTypesAndCallback = Arrays.copyOf(parameterTypes, parameterTypes.length + 1, Object[].class);
+        for (int i = 0; i < methodNames.length; i++) {
+            String methodName = methodNames[i];
             try {
-                // MODIFIED: Force enforceDeviceRestrictions() to return false
-                XposedHelpers.findAndHookMethod(desktopModeStatusClass, "enforceDeviceRestrictions", XC_MethodReplacement.returnConstant(false));
-                XposedBridge.log(TAG + ": Hooked " + CLASS_DESKTOP_MODE_STATUS + "#enforceDeviceRestrictions to return false in " + packageName);
-            } catch (Throwable t) { logError(CLASS_DESKTOP_MODE_STATUS + "#enforceDeviceRestrictions", packageName, t); }
-        } catch (Throwable t) { logError("hookDesktopModeStatus general", packageName, t); }
+                parameterTypesAndCallback[parameterTypes.length] = sStats.isEnabled() || sProfile != null
+                        ? constantReplacement(value, sStats.isEnabled() ? sStats.counter(HookStats.REPLACED, OverrideManifest.OVERRIDE_NAMES[overrideBits[i]]) : null, overrideBits[i])
+                        : XC_MethodReplacement.returnConstant(value);
+                XposedHelpers.findAndHookMethod(clazz, methodName, parameterTypesAndCallback);
+                if (!value) sLog.info("Hooked " + clazz.getName() + "#" + methodName + " to return false in " + packageName);
+            } catch (Throwable t) { logError(clazz.getName() + "#" + methodName, packageName, t); }
+        }
     }
 
-    private void hookDesktopStateImpl(ClassLoader classLoader, String packageName) {
-        try {
-            Class<?> desktopStateImplClass = XposedHelpers.findClass(CLASS_DESKTOP_STATE_IMPL, classLoader);
-            XposedHelpers.findAndHookConstructor(desktopStateImplClass, Context.class,
-                    new XC_MethodHook() {
-                        @Override
-                        protected void afterHookedMethod(MethodHookParam param) throws Throwable {
-                            Object thisObject = param.thisObject;
-                            for (String fieldName : DSI_FIELDS_TO_FORCE_TRUE_IN_CONSTRUCTOR) {
-                                try { XposedHelpers.setBooleanField(thisObject, fieldName, true); } catch (Throwable t) { logError("Set DSI Field True: " + fieldName, packageName, t); }
-                            }
-                            // MODIFIED: enforceDeviceRestrictions is now in DSI_FIELDS_TO_FORCE_FALSE_IN_CONSTRUCTOR
-                            for (String fieldName : DSI_FIELDS_TO_FORCE_FALSE_IN_CONSTRUCTOR) {
-                                try {
-                                    XposedHelpers.setBooleanField(thisObject, fieldName, false);
-                                    XposedBridge.log(TAG + ": Set " + CLASS_DESKTOP_STATE_IMPL + "." + fieldName + " = false in " + packageName);
-                                } catch (Throwable t) { logError("Set DSI Field False: " + fieldName, packageName, t); }
-                            }
-                        }
-                    }
-            );
-            try { XposedHelpers.findAndHookMethod(desktopStateImplClass, "isDeviceEligibleForDesktopMode", XC_MethodReplacement.returnConstant(true)); } catch (Throwable t) { /* ... */ }
-            try { XposedHelpers.findAndHookMethod(desktopStateImplClass, "isDesktopModeSupportedOnDisplay", Display.class, XC_MethodReplacement.returnConstant(true)); } catch (Throwable t) { /* ... */ }
-            try { XposedHelpers.findAndHookMethod(desktopStateImplClass, "isDesktopModeSupportedOnDisplay", int.class, XC_MethodReplacement.returnConstant(true)); } catch (Throwable t) { /* ... */ }
-        } catch (Throwable t) { logError("hookDesktopStateImpl general", packageName, t); }
+    /** Returns {@code value}, counted if there is a counter, unless the profile switched {@code overrideBit} off. */
+    private static XC_MethodReplacement constantReplacement(final Object value, final HookStats.Counter counter, final int overrideBit) {
+        return new XC_MethodReplacement() {
+            @Override
+            protected Object replaceHookedMethod(MethodHookParam param) throws Throwable {
+                if (!isOverrideEnabled(overrideBit)) return XposedBridge.invokeOriginalMethod(param.method, param.thisObject, param.args);
+                if (counter != null) counter.increment();
+                return value;
+            }
+        };
     }
 
-    private void hookTaskbarActivityContext(ClassLoader classLoader, String packageName) {
-        try {
-            Class<?> taskbarActivityContextClass = XposedHelpers.findClass(CLASS_TASKBAR_ACTIVITY_CONTEXT, classLoader);
-            XposedHelpers.findAndHookMethod(taskbarActivityContextClass, "showDesktopTaskbarForFreeformDisplay", XC_MethodReplacement.returnConstant(true));
-            XposedBridge.log(TAG + ": Hooked " + CLASS_TASKBAR_ACTIVITY_CONTEXT + "#showDesktopTaskbarForFreeformDisplay to return true in " + packageName);
-        } catch (Throwable t) { logError("hookTaskbarActivityContext general", packageName, t); }
+    private void hookConstructorFields(Class<?> clazz, final OverrideTarget target, final String packageName) {
+        final ConstructorFieldPatcher fieldPatcher = ConstructorFieldPatcher.forClass(clazz,
+                target.forceTrue, target.forceTrueBits, target.forceFalse, target.forceFalseBits,
+                (fieldName, t) -> logError("Resolve " + target.id + " field " + fieldName, packageName, t));
+        Object[] constructorParametersAndCallback = Arrays.copyOf(target.params, target.params.length + 1, Object[].class);
+        constructorParametersAndCallback[target.params.length] = new XC_MethodHook() {
+            @Override
+            protected void afterHookedMethod(MethodHookParam param) throws Throwable {
+                try { fieldPatcher.apply(param.thisObject, MainHook::isOverrideEnabled); } catch (Throwable t) { logError("Set " + target.id + " fields", packageName, t); }
+            }
+        };
+        XposedHelpers.findAndHookConstructor(clazz, constructorParametersAndCallback);
+        sLog.info("Hooked " + clazz.getName() + " constructor to force " + fieldPatcher.size() + " fields in " + packageName);
     }
 
-    private void hookTaskbarDesktopExperienceFlags(ClassLoader classLoader, String packageName) {
-        try {
-            final Class<?> taskbarDefContainerClass = XposedHelpers.findClass(CLASS_TASKBAR_DESKTOP_EXPERIENCE_FLAGS, classLoader);
-            final Class<?> defInnerFlagClass = XposedHelpers.findClass(CLASS_DESKTOP_EXPERIENCE_FLAG_INNER, classLoader);
-            synchronized (sTargetTaskbarDesktopExperienceFlagInstances) {
-                String cacheKey = packageName + taskbarDefContainerClass.getName();
-                if (!sInitializedPackagesForTdefFlags.contains(cacheKey)) {
-                    boolean oneFlagCached = false;
-                    for (String flagFieldName : TDEF_FLAGS_FIELDS_TO_FORCE_TRUE) {
-                        try {
-                            Object flagInstance = XposedHelpers.getStaticObjectField(taskbarDefContainerClass, flagFieldName);
-                            if (flagInstance != null) { sTargetTaskbarDesktopExperienceFlagInstances.add(flagInstance); oneFlagCached = true; }
-                        } catch (Throwable t) { logError("Cache TDEF: " + flagFieldName, packageName, t); }
-                    }
-                    if (oneFlagCached) { sInitializedPackagesForTdefFlags.add(cacheKey); XposedBridge.log(TAG + ": Cached TaskbarDesktopExperienceFlags for " + packageName); }
-                }
+    /**
+     * Forces the static flag instances named by {@code target}: each one is baked to a constant if the dispatch mode
+     * allows it, and otherwise published to the isTrue() hook of its class, which is installed with the first of them.
+     */
+    private void hookFlagFields(Class<?> containerClass, OverrideTarget target, String packageName) {
+        int forced = 0;
+        for (int pass = 0; pass < 2; pass++) {
+            boolean value = pass == 0;
+            String[] names = value ? target.forceTrue : target.forceFalse;
+            int[] bits = value ? target.forceTrueBits : target.forceFalseBits;
+            for (int i = 0; i < names.length; i++) {
+                try {
+                    Object flagInstance = XposedHelpers.getStaticObjectField(containerClass, names[i]);
+                    if (flagInstance == null) continue;
+                    sFlagNames.put(flagInstance, names[i]);
+                    if (!patchFlagToConstant(flagInstance, names[i], value, packageName)) flagIsTrueHook(flagInstance).add(flagInstance, names[i], value, bits[i], packageName);
+                    forced++;
+                } catch (Throwable t) { logError("Force " + target.id + " flag " + names[i], packageName, t); }
             }
-            XposedHelpers.findAndHookMethod(defInnerFlagClass, "isTrue", new XC_MethodHook() {
-                @Override
-                protected void beforeHookedMethod(MethodHookParam param) throws Throwable {
-                    Object currentFlagInstance = param.thisObject;
-                    if (currentFlagInstance != null && sTargetTaskbarDesktopExperienceFlagInstances.contains(currentFlagInstance)) {
-                        String flagName = getFlagInstanceName(taskbarDefContainerClass, currentFlagInstance, TDEF_FLAGS_FIELDS_TO_FORCE_TRUE, "TaskbarDEF");
-                        param.setResult(true);
-                        XposedBridge.log(TAG + ": Taskbar flag " + flagName + " (" + defInnerFlagClass.getSimpleName() + "#isTrue()) forced to true in " + packageName);
-                    }
-                }
-            });
-            XposedBridge.log(TAG + ": Hooked " + defInnerFlagClass.getName() + "#isTrue() for Taskbar flags in " + packageName);
-        } catch (Throwable t) { logError("hookTaskbarDesktopExperienceFlags general", packageName, t); }
+        }
+        sLog.info("Forced " + forced + " flags of " + containerClass.getName() + " in " + packageName);
     }
 
-    private void hookDesktopExperienceFlags(ClassLoader classLoader, String packageName) {
-        try {
-            final Class<?> defClass = XposedHelpers.findClass(CLASS_DESKTOP_EXPERIENCE_FLAGS, classLoader);
-            synchronized (sTargetDesktopExperienceFlagInstancesToForceTrue) {
-                String cacheKey = packageName + defClass.getName();
-                if (!sInitializedPackagesForDefFlags.contains(cacheKey)) {
-                    boolean oneFlagCached = false;
-                    for (String flagFieldName : DEF_FLAGS_FIELDS_TO_FORCE_TRUE) {
-                        try {
-                            Object flagInstance = XposedHelpers.getStaticObjectField(defClass, flagFieldName);
-                            if (flagInstance != null) { sTargetDesktopExperienceFlagInstancesToForceTrue.add(flagInstance); oneFlagCached = true; }
-                        } catch (Throwable t) { logError("Cache DEF True: " + flagFieldName, packageName, t); }
-                    }
-                    for (String flagFieldName : DEF_FLAGS_FIELDS_TO_FORCE_FALSE) {
-                        try {
-                            Object flagInstance = XposedHelpers.getStaticObjectField(defClass, flagFieldName);
-                            if (flagInstance != null) { sTargetDesktopExperienceFlagInstancesToForceFalse.add(flagInstance); oneFlagCached = true; }
-                        } catch (Throwable t) { logError("Cache DEF False: " + flagFieldName, packageName, t); }
-                    }
-                    if (oneFlagCached) { sInitializedPackagesForDefFlags.add(cacheKey); XposedBridge.log(TAG + ": Cached framework DesktopExperienceFlags for " + packageName); }
-                }
+    private static FlagIsTrueHook flagIsTrueHook(Object flagInstance) throws NoSuchMethodException {
+        Method isTrue = flagInstance.getClass().getMethod("isTrue");
+        synchronized (sFlagHooks) {
+            FlagIsTrueHook hook = sFlagHooks.get(isTrue);
+            if (hook == null) sFlagHooks.put(isTrue, hook = new FlagIsTrueHook(isTrue));
+            return hook;
+        }
+    }
+
+    /**
+     * The isTrue() callback of one flag class, hooked when the first flag it has to cover is added. Enum flags are
+     * looked up by ordinal, other flags by identity; either way one probe yields the forced state and override bit,
+     * and the bit indexes the flag's hit counter, resolved when the flag was added.
+     */
+    private static final class FlagIsTrueHook extends XC_MethodHook {
+        private final Method isTrue;
+        private final boolean enumFlags;
+        /** Null when stats are off. */
+        private final HookStats.LatencyHistogram latency;
+        /** By override bit; each slot is written before the table entry that leads to it is published. */
+        private final HookStats.Counter[] counters = new HookStats.Counter[OverrideManifest.OVERRIDE_COUNT];
+        private final Object lock = new Object();
+        private volatile FlagOverrideTable instances = FlagOverrideTable.EMPTY;
+        private volatile EnumFlagOverrideTable constants = EnumFlagOverrideTable.EMPTY;
+        private boolean hooked;
+
+        FlagIsTrueHook(Method isTrue) {
+            this.isTrue = isTrue;
+            this.enumFlags = Enum.class.isAssignableFrom(isTrue.getDeclaringClass());
+            this.latency = sStats.isEnabled() ? sStats.histogram(isTrue.getDeclaringClass().getName() + "#isTrue") : null;
+        }
+
+        /** Publishes the forced value of {@code flagInstance} before isTrue() is hooked, so no read sees the hook without it. */
+        void add(Object flagInstance, String flagName, boolean value, int overrideBit, String packageName) {
+            synchronized (lock) {
+                if (sStats.isEnabled()) counters[overrideBit] = sStats.counter(value ? HookStats.FORCED_TRUE : HookStats.FORCED_FALSE, flagName);
+                if (enumFlags) constants = constants.with(flagInstance, value, overrideBit);
+                else instances = instances.with(flagInstance, value, overrideBit);
+                if (hooked) return;
+                XposedBridge.hookMethod(isTrue, this);
+                hooked = true;
             }
-            XposedHelpers.findAndHookMethod(defClass, "isTrue", new XC_MethodHook() {
-                @Override
-                protected void beforeHookedMethod(MethodHookParam param) throws Throwable {
-                    Object currentFlagInstance = param.thisObject;
-                    if (currentFlagInstance == null) return;
-                    if (sTargetDesktopExperienceFlagInstancesToForceFalse.contains(currentFlagInstance)) {
-                        String flagName = getFlagInstanceName(defClass, currentFlagInstance, DEF_FLAGS_FIELDS_TO_FORCE_FALSE, "FrameworkDEF");
-                        param.setResult(false);
-                        XposedBridge.log(TAG + ": Framework " + CLASS_DESKTOP_EXPERIENCE_FLAGS + "#isTrue() for " + flagName + " forced to false in " + packageName);
-                    } else if (sTargetDesktopExperienceFlagInstancesToForceTrue.contains(currentFlagInstance)) {
-                        String flagName = getFlagInstanceName(defClass, currentFlagInstance, DEF_FLAGS_FIELDS_TO_FORCE_TRUE, "FrameworkDEF");
-                        param.setResult(true);
-                        XposedBridge.log(TAG + ": Framework " + CLASS_DESKTOP_EXPERIENCE_FLAGS + "#isTrue() for " + flagName + " forced to true in " + packageName);
-                    }
+            sLog.info("Hooked " + isTrue.getDeclaringClass().getName() + "#isTrue() in " + packageName);
+        }
+
+        @Override
+        protected void beforeHookedMethod(MethodHookParam param) throws Throwable {
+            Object flagInstance = param.thisObject;
+            int entry = enumFlags ? constants.entry(flagInstance) : instances.entry(flagInstance);
+            int state = FlagOverrideTable.stateOf(entry);
+            if (state == FlagOverrideTable.NONE) return;
+            // Only forced reads are sampled, so the many untouched flags never pay for the random draw.
+            long sampleStart = latency != null ? latency.start() : 0;
+            int bit = FlagOverrideTable.bitOf(entry);
+            if (isOverrideEnabled(bit)) {
+                boolean value = state == FlagOverrideTable.FORCE_TRUE;
+                param.setResult(value);
+                HookStats.Counter counter = counters[bit];
+                if (counter != null) counter.increment();
+                if (sLog.isLoggable(HookLog.LEVEL_VERBOSE)) {
+                    sLog.verbose(isTrue.getDeclaringClass().getSimpleName() + "#isTrue() for " + getFlagInstanceName(flagInstance) + " forced to " + value + " in " + sProcessName);
                 }
-            });
-            XposedBridge.log(TAG + ": Hooked framework " + CLASS_DESKTOP_EXPERIENCE_FLAGS + "#isTrue() in " + packageName);
-        } catch (Throwable t) { logError("hookDesktopExperienceFlags general", packageName, t); }
+            }
+            if (latency != null) latency.stop(sampleStart);
+        }
     }
 
-    private void hookDesktopModeFlagsEnum(ClassLoader classLoader, String packageName) {
+    /** Bakes value into flagInstance in CONSTANT mode; false means the isTrue() callback must still cover this flag. */
+    private boolean patchFlagToConstant(Object flagInstance, String flagName, boolean value, String packageName) {
+        if (sFlagDispatchMode != FLAG_DISPATCH_CONSTANT || sProfile != null) return false;
         try {
-            final Class<?> dmfEnumClass = XposedHelpers.findClass(CLASS_DESKTOP_MODE_FLAGS_ENUM, classLoader);
-            synchronized (sTargetDesktopModeEnumFlagInstances) {
-                String cacheKey = packageName + dmfEnumClass.getName();
-                if (!sInitializedPackagesForDmfEnumFlags.contains(cacheKey)) {
-                    boolean oneFlagCached = false;
-                    for (String flagFieldName : DMF_ENUM_FIELDS_TO_FORCE_TRUE) {
-                        try {
-                            Object flagInstance = XposedHelpers.getStaticObjectField(dmfEnumClass, flagFieldName);
-                            if (flagInstance != null) { sTargetDesktopModeEnumFlagInstances.add(flagInstance); oneFlagCached = true; }
-                        } catch (Throwable t) { logError("Cache DMF Enum: " + flagFieldName, packageName, t); }
-                    }
-                    if (oneFlagCached) { sInitializedPackagesForDmfEnumFlags.add(cacheKey); XposedBridge.log(TAG + ": Cached DesktopModeFlagsEnum for " + packageName); }
-                }
-            }
-            XposedHelpers.findAndHookMethod(dmfEnumClass, "isTrue", new XC_MethodHook() {
-                @Override
-                protected void beforeHookedMethod(MethodHookParam param) throws Throwable {
-                    Object currentEnumInstance = param.thisObject;
-                    if (currentEnumInstance != null && sTargetDesktopModeEnumFlagInstances.contains(currentEnumInstance)) {
-                        String flagName = getFlagInstanceName(dmfEnumClass, currentEnumInstance, DMF_ENUM_FIELDS_TO_FORCE_TRUE, "DMFEnum");
-                        param.setResult(true);
-                        XposedBridge.log(TAG + ": " + CLASS_DESKTOP_MODE_FLAGS_ENUM + "#isTrue() for " + flagName + " forced to true in " + packageName);
-                    }
-                }
-            });
-            XposedBridge.log(TAG + ": Hooked " + CLASS_DESKTOP_MODE_FLAGS_ENUM + "#isTrue() in " + packageName);
-        } catch (Throwable t) { logError("hookDesktopModeFlagsEnum general", packageName, t); }
+            HookStats.Counter counter = sStats.isEnabled() ? sStats.counter(value ? HookStats.FORCED_TRUE : HookStats.FORCED_FALSE, flagName) : null;
+            if (FlagStatePatcher.patch(flagInstance, value, counter)) return true;
+            sLog.info("Could not patch " + flagName + " to a constant in " + packageName + ", keeping the isTrue() callback");
+        } catch (Throwable t) { logError("Patch flag " + flagName, packageName, t); }
+        return false;
     }
 
-    private String getFlagInstanceName(Class<?> flagContainerClass, Object flagInstance, String[] knownFieldNames, String typeHint) {
-        if (flagInstance == null || flagContainerClass == null) return typeHint + ":UnknownInstance";
-        if (flagInstance instanceof Enum) { return ((Enum<?>) flagInstance).name(); }
-        for (String knownName : knownFieldNames) {
-            try {
-                Object knownInstance = XposedHelpers.getStaticObjectField(flagContainerClass, knownName);
-                if (flagInstance.equals(knownInstance)) { return knownName; }
-            } catch (Throwable ignored) {}
+    /**
+     * Every forced flag is indexed before it is published to a table or patched, so a miss here means a flag was forced
+     * without being named. There is no reflection fallback for that case: the miss is counted in the stats dump instead.
+     */
+    private static String getFlagInstanceName(Object flagInstance) {
+        if (flagInstance instanceof Enum) return ((Enum<?>) flagInstance).name();
+        String indexedName = sFlagNames.get(flagInstance);
+        if (indexedName != null) return indexedName;
+        return flagInstance.getClass().getSimpleName() + "@" + Integer.toHexString(System.identityHashCode(flagInstance));
+    }
+
+    /** Polls PROP_DUMP_STATS on the log drain thread and logs a stats snapshot whenever its value changes. */
+    private static final class StatsDumpTrigger implements Runnable {
+        private Class<?> systemPropertiesClass;
+        private String lastValue;
+
+        @Override
+        public void run() {
+            if (systemPropertiesClass == null) systemPropertiesClass = XposedHelpers.findClass(CLASS_SYSTEM_PROPERTIES, null);
+            String value = (String) XposedHelpers.callStaticMethod(systemPropertiesClass, "get", PROP_DUMP_STATS, "");
+            if (lastValue == null || value.equals(lastValue)) { lastValue = value; return; }
+            lastValue = value;
+            Map<String, Long> extra = new LinkedHashMap<>();
+            extra.put("flagNameIndexHits", sFlagNames.hitCount());
+            extra.put("flagNameIndexMisses", sFlagNames.missCount());
+            extra.put("droppedLogEntries", sLog.droppedCount());
+            sLog.writeInParts("Stats", sStats.toJson(sProcessName, extra));
         }
-        return typeHint + ":" + flagInstance.getClass().getSimpleName() + "@" + Integer.toHexString(flagInstance.hashCode());
     }
 
     private void logError(String context, String packageName, Throwable t) {
-        XposedBridge.log(TAG + ": Error in " + context + " for " + packageName + ": " + t.getMessage());
-        if (!(t instanceof XposedHelpers.ClassNotFoundError) && !(t instanceof NoSuchMethodError) &&
-                !(t instanceof NoSuchFieldError)) {
-            XposedBridge.log(t);
-        }
+        boolean expected = t instanceof XposedHelpers.ClassNotFoundError || t instanceof NoSuchMethodError ||
+                t instanceof NoSuchFieldError || t instanceof NoSuchFieldException;
+        sLog.error("Error in " + context + " for " + packageName + ": " + t.getMessage(), expected ? null : t);
     }
 }
\ No newline at end of file
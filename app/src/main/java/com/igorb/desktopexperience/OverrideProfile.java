@@ -0,0 +1,126 @@
+package com.igorb.desktopexperience;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Read side of an override profile: a small fixed-layout file, memory-mapped once per process, holding
+ * one enable bit per override in OverrideManifest.OVERRIDE_NAMES order. Missing bits mean "enabled".
+ *
+ * <p>Layout (little-endian): magic, generation, override count, layout hash, then the bitset as longs.
+ * The generation is a seqlock: {@link OverrideProfileWriter} makes it odd while it rewrites the bitset and
+ * even again when done. Readers compare it against their snapshot on each {@link #isEnabled} call, which is
+ * a plain memory read of the mapping, and only copy the bitset again when it has moved.
+ */
+final class OverrideProfile {
+    /**
+     * The profile lives in the module's shared preferences directory, where LSPosed (with {@code xposedsharedprefs})
+     * gives it a label and mode every hooked process can read. PREFS_NAME only locates that directory.
+     */
+    static final String PREFS_NAME = "override_profile";
+    static final String FILE_NAME = "override.profile";
+
+    static final int MAGIC = 0x31505844; // "DXP1"
+    static final int GENERATION_OFFSET = 4;
+    static final int COUNT_OFFSET = 8;
+    static final int LAYOUT_OFFSET = 12;
+    static final int BITS_OFFSET = 16;
+    private static final int MAX_REFRESH_ATTEMPTS = 64;
+
+    /** Bitset as of one even generation; replaced whole, never mutated. */
+    private static final class Snapshot {
+        final int generation;
+        final long[] words;
+
+        Snapshot(int generation, long[] words) {
+            this.generation = generation;
+            this.words = words;
+        }
+    }
+
+    private final ByteBuffer buffer;
+    private final int wordCount;
+    private volatile Snapshot snapshot;
+
+    private OverrideProfile(ByteBuffer buffer, int wordCount) {
+        this.buffer = buffer;
+        this.wordCount = wordCount;
+        this.snapshot = new Snapshot(1, null); // Odd, so the first read always loads the bitset.
+    }
+
+    static int wordCount(int overrideCount) {
+        return (overrideCount + 63) >>> 6;
+    }
+
+    static int fileSize(int overrideCount) {
+        return BITS_OFFSET + 8 * wordCount(overrideCount);
+    }
+
+    /** Identifies the bit numbering, so a profile written for another manifest is rejected instead of misread. */
+    static int layoutHash(String[] overrideNames) {
+        return Arrays.hashCode(overrideNames);
+    }
+
+    /**
+     * Maps {@code file} read-only. Returns null if there is no profile; throws if the file exists but was
+     * written for a different manifest or is not a profile at all.
+     */
+    static OverrideProfile open(File file, String[] overrideNames) throws IOException {
+        if (!file.isFile()) return null;
+        int size = fileSize(overrideNames.length);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            if (raf.length() < size) throw new IOException(file + " is " + raf.length() + " bytes, expected " + size);
+            ByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, size).order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.getInt(0) != MAGIC) throw new IOException(file + " is not an override profile");
+            if (buffer.getInt(COUNT_OFFSET) != overrideNames.length || buffer.getInt(LAYOUT_OFFSET) != layoutHash(overrideNames)) {
+                throw new IOException(file + " was written for a different override manifest");
+            }
+            OverrideProfile profile = new OverrideProfile(buffer, wordCount(overrideNames.length));
+            profile.refresh(profile.snapshot);
+            return profile;
+        }
+    }
+
+    boolean isEnabled(int bit) {
+        Snapshot current = snapshot;
+        if (buffer.getInt(GENERATION_OFFSET) != current.generation) current = refresh(current);
+        long[] words = current.words;
+        return words == null || (words[bit >>> 6] & (1L << bit)) != 0;
+    }
+
+    int generation() {
+        return snapshot.generation;
+    }
+
+    /**
+     * Copies the bitset under the seqlock. If a writer stays mid-update (or died there), the previous bits are
+     * kept and pinned to the odd generation, so readers stop retrying until the writer moves it again.
+     */
+    private Snapshot refresh(Snapshot previous) {
+        int before = previous.generation;
+        for (int attempt = 0; attempt < MAX_REFRESH_ATTEMPTS; attempt++) {
+            before = buffer.getInt(GENERATION_OFFSET);
+            if ((before & 1) != 0) {
+                Thread.yield();
+                continue;
+            }
+            VarHandle.acquireFence();
+            long[] words = new long[wordCount];
+            for (int i = 0; i < wordCount; i++) words[i] = buffer.getLong(BITS_OFFSET + 8 * i);
+            VarHandle.acquireFence();
+            if (buffer.getInt(GENERATION_OFFSET) != before) continue;
+            Snapshot next = new Snapshot(before, words);
+            snapshot = next;
+            return next;
+        }
+        Snapshot pinned = new Snapshot(before, previous.words);
+        snapshot = pinned;
+        return pinned;
+    }
+}
@@ -0,0 +1,72 @@
+package com.igorb.desktopexperience;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Edits the override profile on request from adb. It runs in the module's own process because only the module may
+ * write its shared preferences directory; the hooked processes just read the profile from there. Senders need
+ * android.permission.DUMP, which the shell user holds and ordinary apps cannot be granted.
+ *
+ * <p>{@link #ACTION_LIST} returns one "on/off NAME" line per override as the broadcast result data, without creating
+ * the profile; {@link #ACTION_SET} creates it if needed and sets the override in {@link #EXTRA_OVERRIDE} to
+ * {@link #EXTRA_ENABLED}; {@link #ACTION_RESET} deletes the profile, which is how a profile left over from another
+ * manifest is cleared.
+ */
+public final class OverrideProfileReceiver extends BroadcastReceiver {
+    static final String ACTION_LIST = "com.igorb.desktopexperience.action.LIST_OVERRIDES";
+    static final String ACTION_SET = "com.igorb.desktopexperience.action.SET_OVERRIDE";
+    static final String ACTION_RESET = "com.igorb.desktopexperience.action.RESET_OVERRIDES";
+    static final String EXTRA_OVERRIDE = "override";
+    static final String EXTRA_ENABLED = "enabled";
+    private static final int RESULT_FAILED = 1;
+
+    /** The profile file as seen from the module's process; LSPosed redirects the preferences directory for it. */
+    static File profileFile(Context context) {
+        return new File(context.getSharedPreferencesPath(OverrideProfile.PREFS_NAME).getParentFile(), OverrideProfile.FILE_NAME);
+    }
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        File path = profileFile(context);
+        String action = intent.getAction();
+        try {
+            if (ACTION_LIST.equals(action)) {
+                setResultData(list(path));
+            } else if (ACTION_RESET.equals(action)) {
+                // Processes that already mapped the old profile keep reading it until they restart.
+                if (path.exists() && !path.delete()) throw new IOException("could not delete " + path);
+                setResultData("deleted " + path);
+            } else if (ACTION_SET.equals(action) && intent.hasExtra(EXTRA_OVERRIDE) && intent.hasExtra(EXTRA_ENABLED)) {
+                // Only here is the profile created: its mere presence switches flags to the isTrue() callback.
+                path.getParentFile().mkdirs();
+                boolean enabled = intent.getBooleanExtra(EXTRA_ENABLED, true);
+                try (OverrideProfileWriter writer = OverrideProfileWriter.open(path, OverrideManifest.OVERRIDE_NAMES)) {
+                    writer.setEnabled(writer.bitOf(intent.getStringExtra(EXTRA_OVERRIDE)), enabled);
+                }
+                setResultData((enabled ? "on   " : "off  ") + intent.getStringExtra(EXTRA_OVERRIDE));
+            } else {
+                setResultCode(RESULT_FAILED);
+                setResultData("usage: " + ACTION_LIST + " | " + ACTION_RESET + " | " + ACTION_SET + " --es " + EXTRA_OVERRIDE + " NAME --ez " + EXTRA_ENABLED + " true|false");
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            setResultCode(RESULT_FAILED);
+            setResultData(e.toString());
+        }
+    }
+
+    /** One "on/off NAME" line per override, read through a read-only mapping; a missing profile is reported, not created. */
+    static String list(File path) throws IOException {
+        OverrideProfile profile = OverrideProfile.open(path, OverrideManifest.OVERRIDE_NAMES);
+        if (profile == null) return "no profile at " + path + "; every override is on";
+        StringBuilder lines = new StringBuilder();
+        for (int bit = 0; bit < OverrideManifest.OVERRIDE_NAMES.length; bit++) {
+            lines.append(profile.isEnabled(bit) ? "\non   " : "\noff  ").append(OverrideManifest.OVERRIDE_NAMES[bit]);
+        }
+        return lines.toString();
+    }
+}
@@ -0,0 +1,108 @@
+package com.igorb.desktopexperience;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+
+/**
+ * Write side of an {@link OverrideProfile}. The file is only ever updated in place, because every hooked process
+ * keeps its own mapping of it; each update holds an exclusive file lock and runs inside the generation seqlock.
+ * On the device it runs in the module's own process, driven by {@link OverrideProfileReceiver}.
+ */
+final class OverrideProfileWriter implements Closeable {
+    private final RandomAccessFile file;
+    private final ByteBuffer buffer;
+    private final String[] overrideNames;
+
+    private OverrideProfileWriter(RandomAccessFile file, ByteBuffer buffer, String[] overrideNames) {
+        this.file = file;
+        this.buffer = buffer;
+        this.overrideNames = overrideNames;
+    }
+
+    /** Opens {@code path} for writing, creating it with every override enabled if it does not exist yet. */
+    static OverrideProfileWriter open(File path, String[] overrideNames) throws IOException {
+        int size = OverrideProfile.fileSize(overrideNames.length);
+        RandomAccessFile file = new RandomAccessFile(path, "rw");
+        try {
+            ByteBuffer buffer;
+            FileLock lock = file.getChannel().lock();
+            try {
+                boolean created = file.length() == 0;
+                if (created) {
+                    file.setLength(size);
+                    // Readers are the hooked processes, which run as other users.
+                    path.setReadable(true, false);
+                }
+                else if (file.length() != size) throw new IOException(path + " is " + file.length() + " bytes, expected " + size);
+                buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size).order(ByteOrder.LITTLE_ENDIAN);
+                if (created) {
+                    buffer.putInt(OverrideProfile.COUNT_OFFSET, overrideNames.length);
+                    buffer.putInt(OverrideProfile.LAYOUT_OFFSET, OverrideProfile.layoutHash(overrideNames));
+                    for (int bit = 0; bit < overrideNames.length; bit++) setBit(buffer, bit, true);
+                    VarHandle.releaseFence();
+                    buffer.putInt(0, OverrideProfile.MAGIC);
+                } else if (buffer.getInt(0) != OverrideProfile.MAGIC
+                        || buffer.getInt(OverrideProfile.COUNT_OFFSET) != overrideNames.length
+                        || buffer.getInt(OverrideProfile.LAYOUT_OFFSET) != OverrideProfile.layoutHash(overrideNames)) {
+                    throw new IOException(path + " was written for a different override manifest; delete it and reboot");
+                }
+            } finally {
+                lock.release();
+            }
+            return new OverrideProfileWriter(file, buffer, overrideNames);
+        } catch (IOException | RuntimeException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    int bitOf(String overrideName) {
+        for (int bit = 0; bit < overrideNames.length; bit++) {
+            if (overrideNames[bit].equals(overrideName)) return bit;
+        }
+        throw new IllegalArgumentException("unknown override " + overrideName);
+    }
+
+    boolean isEnabled(int bit) {
+        return (buffer.getLong(wordOffset(bit)) & (1L << bit)) != 0;
+    }
+
+    /** Sets one override's enable bit and bumps the generation so every reader picks it up on its next call. */
+    void setEnabled(int bit, boolean enabled) throws IOException {
+        if (bit < 0 || bit >= overrideNames.length) throw new IllegalArgumentException("override bit " + bit + " out of range");
+        FileLock lock = file.getChannel().lock();
+        try {
+            // An odd generation here means a writer died mid-update; the bits are rewritten whole below either way.
+            int generation = buffer.getInt(OverrideProfile.GENERATION_OFFSET) | 1;
+            buffer.putInt(OverrideProfile.GENERATION_OFFSET, generation);
+            VarHandle.fullFence();
+            setBit(buffer, bit, enabled);
+            VarHandle.releaseFence();
+            buffer.putInt(OverrideProfile.GENERATION_OFFSET, generation + 1);
+        } finally {
+            lock.release();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+    private static void setBit(ByteBuffer buffer, int bit, boolean enabled) {
+        int offset = wordOffset(bit);
+        long word = buffer.getLong(offset);
+        buffer.putLong(offset, enabled ? word | (1L << bit) : word & ~(1L << bit));
+    }
+
+    private static int wordOffset(int bit) {
+        return OverrideProfile.BITS_OFFSET + 8 * (bit >>> 6);
+    }
+}
@@ -0,0 +1,43 @@
+package com.igorb.desktopexperience;
+
+/**
+ * One hook target from overrides.json: a class, the members forced on it, and the packages it applies to.
+ * OverrideManifest.TARGETS lists them in manifest order; MainHook installs each one according to its {@link #kind}.
+ */
+final class OverrideTarget {
+    /** Static or instance methods with {@link #params}, replaced by a constant. */
+    static final int METHOD = 0;
+    /** Boolean fields written after every constructor with {@link #params} returns. */
+    static final int CONSTRUCTOR_FIELDS = 1;
+    /** Static flag instances whose isTrue() is forced; {@link #params} is null. */
+    static final int FLAG_FIELDS = 2;
+
+    final String id;
+    final int kind;
+    final String className;
+    /** Parameter type names, resolved against the hooked class's loader. */
+    final String[] params;
+    final String[] forceTrue;
+    final int[] forceTrueBits;
+    final String[] forceFalse;
+    final int[] forceFalseBits;
+    /** OverrideManifest package bits this target applies to. */
+    final int packages;
+
+    OverrideTarget(String id, int kind, String className, String[] params, String[] forceTrue, int[] forceTrueBits,
+                   String[] forceFalse, int[] forceFalseBits, int packages) {
+        this.id = id;
+        this.kind = kind;
+        this.className = className;
+        this.params = params;
+        this.forceTrue = forceTrue;
+        this.forceTrueBits = forceTrueBits;
+        this.forceFalse = forceFalse;
+        this.forceFalseBits = forceFalseBits;
+        this.packages = packages;
+    }
+
+    boolean appliesTo(int packageBit) {
+        return (packages & packageBit) != 0;
+    }
+}
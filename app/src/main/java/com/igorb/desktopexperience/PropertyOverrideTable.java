@@ -0,0 +1,90 @@
+package com.igorb.desktopexperience;
+
+import java.util.Arrays;
+
+/**
+ * Immutable decision table for SystemProperties overrides of one value type.
+ * Up to {@link #DIRECT_MAX_ENTRIES} keys are compared with equals, which already rejects on length first. In larger
+ * tables, keys whose length no override uses are rejected before hashing; the rest are matched on cached hash, then equals.
+ */
+final class PropertyOverrideTable {
+    static final PropertyOverrideTable EMPTY = new PropertyOverrideTable(new Entry[0]);
+    /** Below this many entries the length mask and hash cost more than the equals calls they save. */
+    static final int DIRECT_MAX_ENTRIES = 2;
+
+    /**
+     * One overridden key; {@code packages} is the mask of OverrideManifest package bits whose processes read it,
+     * {@code bit} its index in OverrideManifest.OVERRIDE_NAMES.
+     */
+    static final class Entry {
+        final String key;
+        final Object value;
+        final int packages;
+        final int bit;
+
+        Entry(String key, Object value, int packages, int bit) {
+            this.key = key;
+            this.value = value;
+            this.packages = packages;
+            this.bit = bit;
+        }
+    }
+
+    private final Entry[] entries;
+    /** The first two entries and their keys, or null; only read while the table is {@link #direct}. */
+    private final boolean direct;
+    private final Entry first;
+    private final String firstKey;
+    private final Entry second;
+    private final String secondKey;
+    private final int[] hashes;
+    private final long[] lengthBits;
+
+    private PropertyOverrideTable(Entry[] entries) {
+        this.entries = entries;
+        this.direct = entries.length <= DIRECT_MAX_ENTRIES;
+        this.first = entries.length > 0 ? entries[0] : null;
+        this.firstKey = first != null ? first.key : null;
+        this.second = entries.length > 1 ? entries[1] : null;
+        this.secondKey = second != null ? second.key : null;
+        this.hashes = new int[entries.length];
+        int maxLength = 0;
+        for (int i = 0; i < entries.length; i++) {
+            hashes[i] = entries[i].key.hashCode();
+            maxLength = Math.max(maxLength, entries[i].key.length());
+        }
+        this.lengthBits = new long[entries.length == 0 ? 0 : (maxLength >>> 6) + 1];
+        for (Entry entry : entries) lengthBits[entry.key.length() >>> 6] |= 1L << entry.key.length();
+    }
+
+    boolean isEmpty() { return entries.length == 0; }
+
+    /** Returns the override for {@code key}, or null to let the original method run. */
+    Entry lookup(String key) {
+        if (key == null) return null;
+        if (direct) {
+            if (key.equals(firstKey)) return first;
+            return key.equals(secondKey) ? second : null;
+        }
+        int length = key.length();
+        int word = length >>> 6;
+        if (word >= lengthBits.length || (lengthBits[word] & (1L << length)) == 0) return null;
+        int hash = key.hashCode();
+        for (int i = 0; i < hashes.length; i++) {
+            if (hashes[i] == hash && entries[i].key.equals(key)) return entries[i];
+        }
+        return null;
+    }
+
+    /** Returns a copy of this table extended with the entries that apply to {@code packageBit}; this table is left untouched. */
+    PropertyOverrideTable with(Entry[] added, int packageBit) {
+        Entry[] newEntries = Arrays.copyOf(entries, entries.length + added.length);
+        int n = entries.length;
+        for (Entry entry : added) {
+            if ((entry.packages & packageBit) == 0 || lookup(entry.key) != null) continue;
+            newEntries[n++] = entry;
+        }
+        if (n == entries.length) return this;
+        return new PropertyOverrideTable(Arrays.copyOf(newEntries, n));
+    }
+}
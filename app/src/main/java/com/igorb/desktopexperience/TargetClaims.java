@@ -0,0 +1,23 @@
+package com.igorb.desktopexperience;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Records which targets were installed for which class loader, so a target whose class is shared by several
+ * packages in one process (framework classes, or the android/system pair in system_server) is hooked once.
+ * Loaders are held strongly; the hooks installed for their classes keep them alive for the life of the process anyway.
+ */
+final class TargetClaims {
+    private final Map<ClassLoader, Set<String>> claimed = new HashMap<>();
+
+    /** Returns true for the first call with this defining loader of {@code targetClass} and {@code targetId}, false after that. */
+    synchronized boolean claim(Class<?> targetClass, String targetId) {
+        ClassLoader classLoader = targetClass.getClassLoader();
+        Set<String> ids = claimed.get(classLoader);
+        if (ids == null) claimed.put(classLoader, ids = new HashSet<>());
+        return ids.add(targetId);
+    }
+}
@@ -0,0 +1,65 @@
+package android.os;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import de.robv.android.xposed.XposedBridge;
+
+/** JVM stand-in for the hidden framework class; properties live in a map and every getter is hookable. */
+public final class SystemProperties {
+    private SystemProperties() {}
+
+    private static final ConcurrentHashMap<String, String> properties = new ConcurrentHashMap<>();
+
+    private static final XposedBridge.HookSite GET = XposedBridge.site(
+            XposedBridge.declaredMethod(SystemProperties.class, "get", String.class),
+            (self, args) -> valueOf((String) args[0], ""));
+    private static final XposedBridge.HookSite GET_WITH_DEFAULT = XposedBridge.site(
+            XposedBridge.declaredMethod(SystemProperties.class, "get", String.class, String.class),
+            (self, args) -> valueOf((String) args[0], (String) args[1]));
+    private static final XposedBridge.HookSite GET_INT = XposedBridge.site(
+            XposedBridge.declaredMethod(SystemProperties.class, "getInt", String.class, int.class),
+            (self, args) -> {
+                try {
+                    return Integer.parseInt(valueOf((String) args[0], null));
+                } catch (NumberFormatException e) {
+                    return args[1];
+                }
+            });
+    private static final XposedBridge.HookSite GET_BOOLEAN = XposedBridge.site(
+            XposedBridge.declaredMethod(SystemProperties.class, "getBoolean", String.class, boolean.class),
+            (self, args) -> {
+                String value = valueOf((String) args[0], "");
+                switch (value) {
+                    case "1": case "y": case "yes": case "on": case "true": return true;
+                    case "0": case "n": case "no": case "off": case "false": return false;
+                    default: return args[1];
+                }
+            });
+
+    public static String get(String key) {
+        return (String) XposedBridge.call(GET, null, key);
+    }
+
+    public static String get(String key, String def) {
+        return (String) XposedBridge.call(GET_WITH_DEFAULT, null, key, def);
+    }
+
+    public static int getInt(String key, int def) {
+        return (Integer) XposedBridge.call(GET_INT, null, key, def);
+    }
+
+    public static boolean getBoolean(String key, boolean def) {
+        return (Boolean) XposedBridge.call(GET_BOOLEAN, null, key, def);
+    }
+
+    /** Sets {@code key}; an empty value clears it. Never hooked. */
+    public static void set(String key, String val) {
+        if (val == null || val.isEmpty()) properties.remove(key);
+        else properties.put(key, val);
+    }
+
+    private static String valueOf(String key, String def) {
+        String value = properties.get(key);
+        return value == null ? def : value;
+    }
+}
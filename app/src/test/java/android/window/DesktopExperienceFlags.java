@@ -0,0 +1,81 @@
+package android.window;
+
+import java.util.function.BooleanSupplier;
+
+import de.robv.android.xposed.XposedBridge;
+
+/**
+ * JVM stand-in for the framework enum. Field names and the dev-option logic follow the platform source:
+ * a flag that can be overridden by the dev option reads the toggle first and its flag function otherwise.
+ * The natural values are chosen so every override in overrides.json changes what isTrue() returns.
+ */
+public enum DesktopExperienceFlags {
+    ENABLE_PROJECTED_DISPLAY_DESKTOP_MODE(() -> false, true),
+    ENTER_DESKTOP_BY_DEFAULT_ON_FREEFORM_DISPLAYS(() -> false, true),
+    ENABLE_MULTIPLE_DESKTOPS_BACKEND(() -> false, true),
+    ENABLE_TASKBAR_CONNECTED_DISPLAYS(() -> false, false),
+    ENABLE_MULTIPLE_DESKTOPS_FRONTEND(() -> true, true),
+    // Not overridden by the module
+    ENABLE_CONNECTED_DISPLAYS_DND(() -> true, true),
+    ENABLE_DISPLAY_FOCUS_IN_SHELL_TRANSITIONS(() -> false, true),
+    ENABLE_DISPLAY_WINDOWING_MODE_SWITCHING(() -> true, false),
+    ENABLE_DRAG_TO_MAXIMIZE(() -> false, false),
+    ENABLE_MOVE_TO_NEXT_DISPLAY_SHORTCUT(() -> true, true),
+    ENABLE_PER_DISPLAY_DESKTOP_WALLPAPER_ACTIVITY(() -> false, true),
+    ENABLE_TASKBAR_IN_OVERVIEW(() -> true, false);
+
+    /** Dev option toggle: null while unset, otherwise the value every overridable flag reports. */
+    private static volatile Boolean sToggleOverride;
+
+    private final BooleanSupplier mFlagFunction;
+    private final boolean mShouldOverrideByDevOption;
+
+    DesktopExperienceFlags(BooleanSupplier flagFunction, boolean shouldOverrideByDevOption) {
+        mFlagFunction = flagFunction;
+        mShouldOverrideByDevOption = shouldOverrideByDevOption;
+    }
+
+    private static final XposedBridge.HookSite IS_TRUE = XposedBridge.site(
+            XposedBridge.declaredMethod(DesktopExperienceFlags.class, "isTrue"),
+            (self, args) -> {
+                DesktopExperienceFlags flag = (DesktopExperienceFlags) self;
+                return isFlagTrue(flag.mFlagFunction, flag.mShouldOverrideByDevOption);
+            });
+
+    public boolean isTrue() {
+        return (Boolean) XposedBridge.call(IS_TRUE, this);
+    }
+
+    /** Test helper for the dev option toggle; null clears it. */
+    public static void setToggleOverride(Boolean value) {
+        sToggleOverride = value;
+    }
+
+    private static boolean isFlagTrue(BooleanSupplier flagFunction, boolean shouldOverrideByDevOption) {
+        Boolean toggleOverride = sToggleOverride;
+        if (shouldOverrideByDevOption && toggleOverride != null) return toggleOverride;
+        return flagFunction.getAsBoolean();
+    }
+
+    /** Standalone flag for code outside the framework, such as the launcher's TaskbarDesktopExperienceFlags. */
+    public static class DesktopExperienceFlag {
+        private static final XposedBridge.HookSite IS_TRUE = XposedBridge.site(
+                XposedBridge.declaredMethod(DesktopExperienceFlag.class, "isTrue"),
+                (self, args) -> {
+                    DesktopExperienceFlag flag = (DesktopExperienceFlag) self;
+                    return isFlagTrue(flag.mFlagFunction, flag.mShouldOverrideByDevOption);
+                });
+
+        private final BooleanSupplier mFlagFunction;
+        private final boolean mShouldOverrideByDevOption;
+
+        public DesktopExperienceFlag(BooleanSupplier flagFunction, boolean shouldOverrideByDevOption) {
+            mFlagFunction = flagFunction;
+            mShouldOverrideByDevOption = shouldOverrideByDevOption;
+        }
+
+        public boolean isTrue() {
+            return (Boolean) XposedBridge.call(IS_TRUE, this);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package android.window;
+
+import java.util.function.BooleanSupplier;
+
+import de.robv.android.xposed.XposedBridge;
+
+/**
+ * JVM stand-in for the framework enum, shaped like {@link DesktopExperienceFlags}. Every constant the module
+ * forces to true is naturally false.
+ */
+public enum DesktopModeFlags {
+    ENABLE_DESKTOP_CLOSE_SHORTCUT_BUGFIX(() -> false, true),
+    ENABLE_TASKBAR_OVERFLOW(() -> false, true),
+    ENABLE_TASKBAR_RECENTS_LAYOUT_TRANSITION(() -> false, false),
+    PRESERVE_RECENTS_TASK_CONFIGURATION_ON_RELAUNCH(() -> false, true),
+    // Not overridden by the module
+    ENABLE_DESKTOP_WINDOWING_MODE(() -> true, true),
+    ENABLE_DESKTOP_WINDOWING_TASK_LIMIT(() -> true, true),
+    ENABLE_CAPTION_COMPAT_INSET_FORCE_CONSUMPTION(() -> false, true),
+    ENABLE_WINDOWING_DYNAMIC_INITIAL_BOUNDS(() -> true, false),
+    ENABLE_DESKTOP_APP_LAUNCH_ALTTAB_TRANSITIONS(() -> false, true),
+    ENABLE_MINIMIZE_BUTTON(() -> true, true);
+
+    private static volatile Boolean sToggleOverride;
+
+    private final BooleanSupplier mFlagFunction;
+    private final boolean mShouldOverrideByDevOption;
+
+    DesktopModeFlags(BooleanSupplier flagFunction, boolean shouldOverrideByDevOption) {
+        mFlagFunction = flagFunction;
+        mShouldOverrideByDevOption = shouldOverrideByDevOption;
+    }
+
+    private static final XposedBridge.HookSite IS_TRUE = XposedBridge.site(
+            XposedBridge.declaredMethod(DesktopModeFlags.class, "isTrue"),
+            (self, args) -> {
+                DesktopModeFlags flag = (DesktopModeFlags) self;
+                Boolean toggleOverride = sToggleOverride;
+                if (flag.mShouldOverrideByDevOption && toggleOverride != null) return toggleOverride;
+                return flag.mFlagFunction.getAsBoolean();
+            });
+
+    public boolean isTrue() {
+        return (Boolean) XposedBridge.call(IS_TRUE, this);
+    }
+
+    /** Test helper for the dev option toggle; null clears it. */
+    public static void setToggleOverride(Boolean value) {
+        sToggleOverride = value;
+    }
+}
@@ -0,0 +1,14 @@
+package com.android.launcher3.taskbar;
+
+import de.robv.android.xposed.XposedBridge;
+
+/** JVM stand-in for the launcher class; only the method the module forces is modelled. */
+public class TaskbarActivityContext {
+    private static final XposedBridge.HookSite SHOW_DESKTOP_TASKBAR_FOR_FREEFORM_DISPLAY = XposedBridge.site(
+            XposedBridge.declaredMethod(TaskbarActivityContext.class, "showDesktopTaskbarForFreeformDisplay"),
+            (self, args) -> false);
+
+    public boolean showDesktopTaskbarForFreeformDisplay() {
+        return (Boolean) XposedBridge.call(SHOW_DESKTOP_TASKBAR_FOR_FREEFORM_DISPLAY, this);
+    }
+}
@@ -0,0 +1,13 @@
+package com.android.launcher3.taskbar;
+
+import android.window.DesktopExperienceFlags.DesktopExperienceFlag;
+
+/** JVM stand-in for the launcher's flag holder: standalone framework flags kept in static fields. */
+public final class TaskbarDesktopExperienceFlags {
+    private TaskbarDesktopExperienceFlags() {}
+
+    public static final DesktopExperienceFlag enableAltTabKqsOnConnectedDisplays = new DesktopExperienceFlag(() -> false, true);
+    public static final DesktopExperienceFlag enableAltTabKqsFlatenning = new DesktopExperienceFlag(() -> false, false);
+    // Not overridden by the module
+    public static final DesktopExperienceFlag enableTaskbarConnectedDisplays = new DesktopExperienceFlag(() -> true, true);
+}
@@ -0,0 +1,66 @@
+package com.android.wm.shell.shared.desktopmode;
+
+import android.content.Context;
+import android.os.SystemProperties;
+
+import de.robv.android.xposed.XposedBridge;
+
+/** JVM stand-in for the WM Shell class. Every check the module forces reports false on its own. */
+public final class DesktopModeStatus {
+    private DesktopModeStatus() {}
+
+    static final String ENFORCE_DEVICE_RESTRICTIONS_SYS_PROP = "persist.wm.debug.desktop_mode_enforce_device_restrictions";
+
+    private static final XposedBridge.HookSite IS_DESKTOP_MODE_SUPPORTED = contextCheck("isDesktopModeSupported");
+    private static final XposedBridge.HookSite IS_DESKTOP_MODE_DEV_OPTION_SUPPORTED = contextCheck("isDesktopModeDevOptionSupported");
+    private static final XposedBridge.HookSite CAN_SHOW_DESKTOP_MODE_DEV_OPTION = contextCheck("canShowDesktopModeDevOption");
+    private static final XposedBridge.HookSite CAN_SHOW_DESKTOP_EXPERIENCE_DEV_OPTION = contextCheck("canShowDesktopExperienceDevOption");
+    private static final XposedBridge.HookSite SHOULD_DEV_OPTION_BE_ENABLED_BY_DEFAULT = contextCheck("shouldDevOptionBeEnabledByDefault");
+    private static final XposedBridge.HookSite IS_DEVICE_ELIGIBLE_FOR_DESKTOP_MODE = contextCheck("isDeviceEligibleForDesktopMode");
+    private static final XposedBridge.HookSite IS_DEVICE_ELIGIBLE_FOR_DESKTOP_MODE_DEV_OPTION = contextCheck("isDeviceEligibleForDesktopModeDevOption");
+    private static final XposedBridge.HookSite USE_DESKTOP_OVERRIDE_DENSITY = contextCheck("useDesktopOverrideDensity");
+    private static final XposedBridge.HookSite ENFORCE_DEVICE_RESTRICTIONS = XposedBridge.site(
+            XposedBridge.declaredMethod(DesktopModeStatus.class, "enforceDeviceRestrictions"),
+            (self, args) -> SystemProperties.getBoolean(ENFORCE_DEVICE_RESTRICTIONS_SYS_PROP, true));
+
+    public static boolean isDesktopModeSupported(Context context) {
+        return (Boolean) XposedBridge.call(IS_DESKTOP_MODE_SUPPORTED, null, context);
+    }
+
+    public static boolean isDesktopModeDevOptionSupported(Context context) {
+        return (Boolean) XposedBridge.call(IS_DESKTOP_MODE_DEV_OPTION_SUPPORTED, null, context);
+    }
+
+    public static boolean canShowDesktopModeDevOption(Context context) {
+        return (Boolean) XposedBridge.call(CAN_SHOW_DESKTOP_MODE_DEV_OPTION, null, context);
+    }
+
+    public static boolean canShowDesktopExperienceDevOption(Context context) {
+        return (Boolean) XposedBridge.call(CAN_SHOW_DESKTOP_EXPERIENCE_DEV_OPTION, null, context);
+    }
+
+    public static boolean shouldDevOptionBeEnabledByDefault(Context context) {
+        return (Boolean) XposedBridge.call(SHOULD_DEV_OPTION_BE_ENABLED_BY_DEFAULT, null, context);
+    }
+
+    public static boolean isDeviceEligibleForDesktopMode(Context context) {
+        return (Boolean) XposedBridge.call(IS_DEVICE_ELIGIBLE_FOR_DESKTOP_MODE, null, context);
+    }
+
+    public static boolean isDeviceEligibleForDesktopModeDevOption(Context context) {
+        return (Boolean) XposedBridge.call(IS_DEVICE_ELIGIBLE_FOR_DESKTOP_MODE_DEV_OPTION, null, context);
+    }
+
+    /** Not overridden by the module. */
+    public static boolean useDesktopOverrideDensity(Context context) {
+        return (Boolean) XposedBridge.call(USE_DESKTOP_OVERRIDE_DENSITY, null, context);
+    }
+
+    public static boolean enforceDeviceRestrictions() {
+        return (Boolean) XposedBridge.call(ENFORCE_DEVICE_RESTRICTIONS, null);
+    }
+
+    private static XposedBridge.HookSite contextCheck(String name) {
+        return XposedBridge.site(XposedBridge.declaredMethod(DesktopModeStatus.class, name, Context.class), (self, args) -> false);
+    }
+}
@@ -0,0 +1,78 @@
+package com.android.wm.shell.shared.desktopmode;
+
+import android.content.Context;
+import android.view.Display;
+
+import de.robv.android.xposed.XposedBridge;
+
+/**
+ * JVM stand-in for the WM Shell class. The constructor computes its state fields the opposite way the
+ * module forces them; the constructor hook site runs at the end of the body, after the fields are set.
+ */
+public class DesktopStateImpl {
+    private static final XposedBridge.HookSite CONSTRUCTOR = XposedBridge.site(
+            XposedBridge.declaredConstructor(DesktopStateImpl.class, Context.class), (self, args) -> null);
+    private static final XposedBridge.HookSite IS_DEVICE_ELIGIBLE_FOR_DESKTOP_MODE = XposedBridge.site(
+            XposedBridge.declaredMethod(DesktopStateImpl.class, "isDeviceEligibleForDesktopMode"),
+            (self, args) -> false);
+    private static final XposedBridge.HookSite IS_DESKTOP_MODE_SUPPORTED_ON_DISPLAY = XposedBridge.site(
+            XposedBridge.declaredMethod(DesktopStateImpl.class, "isDesktopModeSupportedOnDisplay", Display.class),
+            (self, args) -> false);
+    private static final XposedBridge.HookSite IS_DESKTOP_MODE_SUPPORTED_ON_DISPLAY_ID = XposedBridge.site(
+            XposedBridge.declaredMethod(DesktopStateImpl.class, "isDesktopModeSupportedOnDisplay", int.class),
+            (self, args) -> false);
+
+    private final boolean canEnterDesktopMode;
+    private final boolean enterDesktopByDefaultOnFreeformDisplay;
+    private final boolean isDesktopModeSupported;
+    private final boolean canInternalDisplayHostDesktops;
+    private final boolean enforceDeviceRestrictions;
+    private final boolean useRoundedCorners;
+
+    public DesktopStateImpl(Context context) {
+        enforceDeviceRestrictions = DesktopModeStatus.enforceDeviceRestrictions();
+        isDesktopModeSupported = DesktopModeStatus.isDesktopModeSupported(context) && !enforceDeviceRestrictions;
+        canEnterDesktopMode = isDesktopModeSupported;
+        enterDesktopByDefaultOnFreeformDisplay = false;
+        canInternalDisplayHostDesktops = true;
+        useRoundedCorners = true;
+        XposedBridge.call(CONSTRUCTOR, this, context);
+    }
+
+    public boolean getCanEnterDesktopMode() {
+        return canEnterDesktopMode;
+    }
+
+    public boolean getEnterDesktopByDefaultOnFreeformDisplay() {
+        return enterDesktopByDefaultOnFreeformDisplay;
+    }
+
+    public boolean isDesktopModeSupported() {
+        return isDesktopModeSupported;
+    }
+
+    public boolean getCanInternalDisplayHostDesktops() {
+        return canInternalDisplayHostDesktops;
+    }
+
+    public boolean getEnforceDeviceRestrictions() {
+        return enforceDeviceRestrictions;
+    }
+
+    /** Not overridden by the module. */
+    public boolean getUseRoundedCorners() {
+        return useRoundedCorners;
+    }
+
+    public boolean isDeviceEligibleForDesktopMode() {
+        return (Boolean) XposedBridge.call(IS_DEVICE_ELIGIBLE_FOR_DESKTOP_MODE, this);
+    }
+
+    public boolean isDesktopModeSupportedOnDisplay(Display display) {
+        return (Boolean) XposedBridge.call(IS_DESKTOP_MODE_SUPPORTED_ON_DISPLAY, this, display);
+    }
+
+    public boolean isDesktopModeSupportedOnDisplay(int displayId) {
+        return (Boolean) XposedBridge.call(IS_DESKTOP_MODE_SUPPORTED_ON_DISPLAY_ID, this, displayId);
+    }
+}
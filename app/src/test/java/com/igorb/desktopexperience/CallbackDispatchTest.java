@@ -0,0 +1,74 @@
+package com.igorb.desktopexperience;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.os.SystemProperties;
+import android.window.DesktopExperienceFlags;
+import android.window.DesktopModeFlags;
+
+import com.android.launcher3.taskbar.TaskbarDesktopExperienceFlags;
+
+import org.junit.After;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+import java.util.function.BooleanSupplier;
+
+import de.robv.android.xposed.XposedBridge;
+import de.robv.android.xposed.callbacks.XC_LoadPackage;
+
+/** The flag overrides with {@code debug.desktop_experience.flag_dispatch=callback}: flags stay untouched and isTrue() is hooked. */
+public class CallbackDispatchTest {
+    private static final ClassLoader LOADER = CallbackDispatchTest.class.getClassLoader();
+
+    @BeforeClass
+    public static void loadPackages() throws Throwable {
+        SystemProperties.set("debug.desktop_experience.flag_dispatch", "callback");
+        MainHook hook = new MainHook();
+        hook.handleLoadPackage(XC_LoadPackage.LoadPackageParam.of("com.android.systemui", LOADER));
+        hook.handleLoadPackage(XC_LoadPackage.LoadPackageParam.of("com.google.android.apps.nexuslauncher", LOADER));
+    }
+
+    @After
+    public void clearDevOptionToggles() {
+        DesktopExperienceFlags.setToggleOverride(null);
+        DesktopModeFlags.setToggleOverride(null);
+    }
+
+    @Test
+    public void hooksIsTrueOnceForEveryFlagClass() throws NoSuchMethodException {
+        assertEquals(1, XposedBridge.hookCount(DesktopExperienceFlags.class.getMethod("isTrue")));
+        assertEquals(1, XposedBridge.hookCount(DesktopExperienceFlags.DesktopExperienceFlag.class.getMethod("isTrue")));
+        assertEquals(1, XposedBridge.hookCount(DesktopModeFlags.class.getMethod("isTrue")));
+    }
+
+    @Test
+    public void leavesFlagFunctionsAlone() throws ReflectiveOperationException {
+        Field function = DesktopExperienceFlags.class.getDeclaredField("mFlagFunction");
+        function.setAccessible(true);
+        assertFalse(((BooleanSupplier) function.get(DesktopExperienceFlags.ENABLE_MULTIPLE_DESKTOPS_BACKEND)).getAsBoolean());
+    }
+
+    @Test
+    public void forcesTargetsAndLeavesOtherFlagsAlone() {
+        assertTrue(DesktopExperienceFlags.ENABLE_MULTIPLE_DESKTOPS_BACKEND.isTrue());
+        assertFalse(DesktopExperienceFlags.ENABLE_MULTIPLE_DESKTOPS_FRONTEND.isTrue());
+        assertFalse(DesktopExperienceFlags.ENABLE_DRAG_TO_MAXIMIZE.isTrue());
+        assertTrue(DesktopModeFlags.ENABLE_TASKBAR_OVERFLOW.isTrue());
+        assertTrue(DesktopModeFlags.ENABLE_MINIMIZE_BUTTON.isTrue());
+        assertTrue(TaskbarDesktopExperienceFlags.enableAltTabKqsOnConnectedDisplays.isTrue());
+        assertTrue(TaskbarDesktopExperienceFlags.enableTaskbarConnectedDisplays.isTrue());
+    }
+
+    @Test
+    public void forcedFlagsIgnoreTheDevOptionToggle() {
+        DesktopExperienceFlags.setToggleOverride(true);
+        DesktopModeFlags.setToggleOverride(false);
+        assertFalse(DesktopExperienceFlags.ENABLE_MULTIPLE_DESKTOPS_FRONTEND.isTrue());
+        assertTrue(DesktopModeFlags.ENABLE_TASKBAR_OVERFLOW.isTrue());
+        assertFalse(DesktopModeFlags.ENABLE_DESKTOP_WINDOWING_MODE.isTrue());
+    }
+}
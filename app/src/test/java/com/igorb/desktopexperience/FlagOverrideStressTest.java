@@ -0,0 +1,132 @@
+package com.igorb.desktopexperience;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import android.os.SystemProperties;
+import android.window.DesktopExperienceFlags;
+import android.window.DesktopModeFlags;
+
+import com.android.launcher3.taskbar.TaskbarDesktopExperienceFlags;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+
+import de.robv.android.xposed.XposedBridge;
+import de.robv.android.xposed.callbacks.XC_LoadPackage;
+
+/**
+ * Loads every target package on several threads at once while other threads keep reading flags, as happens when a
+ * process hosts more than one of them. A forced flag must never read its natural value again once it has been seen
+ * forced, and flags the module leaves alone must never change. Flags are dispatched through the isTrue() callback, so
+ * every load publishes into the same copy-on-write override tables the readers are probing.
+ */
+public class FlagOverrideStressTest {
+    private static final ClassLoader LOADER = FlagOverrideStressTest.class.getClassLoader();
+    private static final String[] PACKAGES = {
+            "com.android.settings", "com.google.android.apps.nexuslauncher", "com.android.systemui",
+            "android", "system", "com.android.shell",
+    };
+    private static final int LOADS_PER_PACKAGE = 3;
+    private static final int READERS = 4;
+
+    private static final class Probe {
+        final String name;
+        final BooleanSupplier read;
+        final boolean natural;
+        final boolean forced;
+
+        Probe(String name, BooleanSupplier read, boolean natural, boolean forced) {
+            this.name = name;
+            this.read = read;
+            this.natural = natural;
+            this.forced = forced;
+        }
+    }
+
+    private static List<Probe> probes() {
+        List<Probe> probes = new ArrayList<>();
+        probes.add(new Probe("ENABLE_MULTIPLE_DESKTOPS_BACKEND", DesktopExperienceFlags.ENABLE_MULTIPLE_DESKTOPS_BACKEND::isTrue, false, true));
+        probes.add(new Probe("ENABLE_MULTIPLE_DESKTOPS_FRONTEND", DesktopExperienceFlags.ENABLE_MULTIPLE_DESKTOPS_FRONTEND::isTrue, true, false));
+        probes.add(new Probe("ENABLE_TASKBAR_OVERFLOW", DesktopModeFlags.ENABLE_TASKBAR_OVERFLOW::isTrue, false, true));
+        probes.add(new Probe("enableAltTabKqsOnConnectedDisplays", TaskbarDesktopExperienceFlags.enableAltTabKqsOnConnectedDisplays::isTrue, false, true));
+        probes.add(new Probe("ENABLE_DRAG_TO_MAXIMIZE", DesktopExperienceFlags.ENABLE_DRAG_TO_MAXIMIZE::isTrue, false, false));
+        probes.add(new Probe("ENABLE_CONNECTED_DISPLAYS_DND", DesktopExperienceFlags.ENABLE_CONNECTED_DISPLAYS_DND::isTrue, true, true));
+        probes.add(new Probe("ENABLE_MINIMIZE_BUTTON", DesktopModeFlags.ENABLE_MINIMIZE_BUTTON::isTrue, true, true));
+        probes.add(new Probe("enableTaskbarConnectedDisplays", TaskbarDesktopExperienceFlags.enableTaskbarConnectedDisplays::isTrue, true, true));
+        return probes;
+    }
+
+    @BeforeClass
+    public static void dispatchFlagsThroughTheCallback() {
+        SystemProperties.set(MainHook.PROP_FLAG_DISPATCH, "callback");
+    }
+
+    @Test(timeout = 60_000)
+    public void concurrentLoadsNeverUnforceAFlag() throws InterruptedException, NoSuchMethodException {
+        final List<Probe> probes = probes();
+        final CountDownLatch startGate = new CountDownLatch(1);
+        final CountDownLatch loadsDone = new CountDownLatch(PACKAGES.length * LOADS_PER_PACKAGE);
+        final AtomicReference<String> failure = new AtomicReference<>();
+        List<Thread> threads = new ArrayList<>();
+
+        for (int r = 0; r < READERS; r++) {
+            threads.add(new Thread(() -> {
+                boolean[] seenForced = new boolean[probes.size()];
+                awaitQuietly(startGate);
+                // Keep reading until every load has returned, then make one last pass.
+                boolean last = false;
+                while (failure.get() == null) {
+                    last = loadsDone.getCount() == 0;
+                    for (int i = 0; i < probes.size(); i++) {
+                        Probe probe = probes.get(i);
+                        boolean value = probe.read.getAsBoolean();
+                        if (value == probe.forced && probe.forced != probe.natural) seenForced[i] = true;
+                        else if (value != probe.natural) failure.compareAndSet(null, probe.name + " read " + value + ", which is neither its natural nor its forced value");
+                        else if (seenForced[i]) failure.compareAndSet(null, probe.name + " read its natural value " + value + " after it was forced");
+                    }
+                    if (last) break;
+                }
+            }, "reader-" + r));
+        }
+        for (final String packageName : PACKAGES) {
+            for (int l = 0; l < LOADS_PER_PACKAGE; l++) {
+                threads.add(new Thread(() -> {
+                    awaitQuietly(startGate);
+                    try {
+                        new MainHook().handleLoadPackage(XC_LoadPackage.LoadPackageParam.of(packageName, LOADER));
+                    } catch (Throwable t) {
+                        failure.compareAndSet(null, "loading " + packageName + " threw " + t);
+                    } finally {
+                        loadsDone.countDown();
+                    }
+                }, "load-" + packageName + "-" + l));
+            }
+        }
+
+        for (Thread thread : threads) thread.start();
+        startGate.countDown();
+        for (Thread thread : threads) thread.join();
+
+        assertNull(failure.get());
+        for (Probe probe : probes) assertEquals(probe.name, probe.forced, probe.read.getAsBoolean());
+        // One hook per flag class, however many loads raced to install it.
+        assertEquals(1, XposedBridge.hookCount(DesktopExperienceFlags.class.getMethod("isTrue")));
+        assertEquals(1, XposedBridge.hookCount(DesktopExperienceFlags.DesktopExperienceFlag.class.getMethod("isTrue")));
+        assertEquals(1, XposedBridge.hookCount(DesktopModeFlags.class.getMethod("isTrue")));
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
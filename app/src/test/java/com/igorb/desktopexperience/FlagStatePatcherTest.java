@@ -0,0 +1,96 @@
+package com.igorb.desktopexperience;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import android.window.DesktopExperienceFlags;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.function.BooleanSupplier;
+
+public class FlagStatePatcherTest {
+    private final HookStats stats = new HookStats(true, 0);
+
+    /** Has the right fields, but isTrue() answers from a value cached at construction. */
+    public static final class CachingFlag {
+        private final BooleanSupplier mFlagFunction;
+        private final boolean mShouldOverrideByDevOption = true;
+        private final boolean cached;
+
+        CachingFlag(BooleanSupplier flagFunction) {
+            mFlagFunction = flagFunction;
+            cached = flagFunction.getAsBoolean();
+        }
+
+        public boolean isTrue() {
+            return cached;
+        }
+    }
+
+    /** Reads its function, but under other field names. */
+    public static final class RenamedFlag {
+        private final BooleanSupplier function;
+
+        RenamedFlag(BooleanSupplier function) {
+            this.function = function;
+        }
+
+        public boolean isTrue() {
+            return function.getAsBoolean();
+        }
+    }
+
+    @After
+    public void clearDevOptionToggle() {
+        DesktopExperienceFlags.setToggleOverride(null);
+    }
+
+    @Test
+    public void patchesFlagAndTurnsOffItsDevOptionSwitch() throws ReflectiveOperationException {
+        DesktopExperienceFlags.DesktopExperienceFlag flag = new DesktopExperienceFlags.DesktopExperienceFlag(() -> false, true);
+        assertTrue(FlagStatePatcher.patch(flag, true, null));
+        DesktopExperienceFlags.setToggleOverride(false);
+        assertTrue(flag.isTrue());
+    }
+
+    @Test
+    public void patchesFlagWhoseForcedValueIsItsNaturalValue() throws ReflectiveOperationException {
+        DesktopExperienceFlags.DesktopExperienceFlag flag = new DesktopExperienceFlags.DesktopExperienceFlag(() -> true, true);
+        assertTrue(FlagStatePatcher.patch(flag, true, null));
+        DesktopExperienceFlags.setToggleOverride(false);
+        assertTrue(flag.isTrue());
+    }
+
+    @Test
+    public void rejectsFlagThatDoesNotReadItsFunction() throws ReflectiveOperationException {
+        BooleanSupplier natural = () -> true;
+        CachingFlag flag = new CachingFlag(natural);
+        // isTrue() already returns true, so only the probe can tell the patch had no effect.
+        assertFalse(FlagStatePatcher.patch(flag, true, null));
+        assertSame(natural, flag.mFlagFunction);
+    }
+
+    @Test
+    public void leavesFlagWithoutTheNamedFieldsAlone() throws ReflectiveOperationException {
+        BooleanSupplier natural = () -> false;
+        RenamedFlag flag = new RenamedFlag(natural);
+        assertFalse(FlagStatePatcher.patch(flag, true, null));
+        assertSame(natural, flag.function);
+        assertFalse(flag.isTrue());
+    }
+
+    @Test
+    public void countsReadsAfterThePatchOnly() throws ReflectiveOperationException {
+        HookStats.Counter counter = stats.counter(HookStats.FORCED_TRUE, "ENABLE_X");
+        DesktopExperienceFlags.DesktopExperienceFlag flag = new DesktopExperienceFlags.DesktopExperienceFlag(() -> false, false);
+        assertTrue(FlagStatePatcher.patch(flag, true, counter));
+        assertEquals(0, counter.sum());
+        flag.isTrue();
+        flag.isTrue();
+        assertEquals(2, counter.sum());
+    }
+}
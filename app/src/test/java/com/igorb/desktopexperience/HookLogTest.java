@@ -0,0 +1,194 @@
+package com.igorb.desktopexperience;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class HookLogTest {
+    private static final long NEVER_MS = TimeUnit.HOURS.toMillis(1);
+
+    /** Records everything the log writes; thread-safe so the drain thread can write to it. */
+    private static final class RecordingSink implements HookLog.Sink {
+        final List<String> lines = new ArrayList<>();
+        final CountDownLatch firstLine = new CountDownLatch(1);
+
+        @Override
+        public synchronized void log(String message) {
+            lines.add(message);
+            firstLine.countDown();
+        }
+
+        @Override
+        public synchronized void log(Throwable t) {
+            lines.add("throwable " + t.getMessage());
+            firstLine.countDown();
+        }
+
+        synchronized List<String> lines() {
+            return new ArrayList<>(lines);
+        }
+    }
+
+    private final RecordingSink sink = new RecordingSink();
+    private final HookStats stats = new HookStats(true, 0);
+
+    @Test
+    public void drainsEntriesInOrderWithTag() {
+        HookLog log = new HookLog("T", sink, stats, 8, NEVER_MS);
+        log.info("one");
+        log.error("two", new IllegalStateException("boom"));
+        log.info("three");
+        log.drain();
+        assertEquals(Arrays.asList("T: one", "T: two", "throwable boom", "T: three"), sink.lines());
+        log.drain();
+        assertEquals(4, sink.lines().size());
+    }
+
+    @Test
+    public void levelFiltersEntries() {
+        HookLog log = new HookLog("T", sink, stats, 8, NEVER_MS);
+        log.setLevel(HookLog.LEVEL_ERROR);
+        log.info("info");
+        log.verbose("verbose");
+        log.error("error", null);
+        log.setLevel(HookLog.LEVEL_VERBOSE);
+        log.verbose("verbose again");
+        log.setLevel(HookLog.LEVEL_OFF);
+        log.error("off", null);
+        log.drain();
+        assertEquals(Arrays.asList("T: error", "T: verbose again"), sink.lines());
+    }
+
+    @Test
+    public void parsesLevelNamesAndNumbers() {
+        assertEquals(HookLog.LEVEL_OFF, HookLog.parseLevel("OFF", HookLog.LEVEL_INFO));
+        assertEquals(HookLog.LEVEL_ERROR, HookLog.parseLevel("1", HookLog.LEVEL_INFO));
+        assertEquals(HookLog.LEVEL_VERBOSE, HookLog.parseLevel(" verbose ", HookLog.LEVEL_INFO));
+        assertEquals(HookLog.LEVEL_INFO, HookLog.parseLevel("", HookLog.LEVEL_INFO));
+        assertEquals(HookLog.LEVEL_ERROR, HookLog.parseLevel("loud", HookLog.LEVEL_ERROR));
+        assertEquals(HookLog.LEVEL_INFO, HookLog.parseLevel(null, HookLog.LEVEL_INFO));
+    }
+
+    @Test
+    public void fullBufferDropsEntriesAndReportsThemOnce() {
+        HookLog log = new HookLog("T", sink, stats, 4, 0);
+        for (int i = 0; i < 6; i++) log.info("entry " + i);
+        assertEquals(2, log.droppedCount());
+        log.drain();
+        assertEquals(Arrays.asList("T: entry 0", "T: entry 1", "T: entry 2", "T: entry 3", "T: Dropped 2 log entries (buffer full)"), sink.lines());
+        log.drain();
+        assertEquals(5, sink.lines().size());
+    }
+
+    @Test
+    public void summarizesCounterGrowthPerInterval() {
+        HookLog log = new HookLog("T", sink, stats, 8, 0);
+        HookStats.Counter counter = stats.counter(HookStats.FORCED_TRUE, "ENABLE_X");
+        for (int i = 0; i < 3; i++) counter.increment();
+        log.drain();
+        assertEquals(1, sink.lines().size());
+        assertTrue(sink.lines().get(0), sink.lines().get(0).startsWith("T: ENABLE_X forced true \u00d73 in last "));
+        log.drain();
+        assertEquals(1, sink.lines().size());
+        counter.increment();
+        log.drain();
+        assertTrue(sink.lines().get(1), sink.lines().get(1).startsWith("T: ENABLE_X forced true \u00d71 in last "));
+    }
+
+    @Test
+    public void summaryCountsIgnoreTheDefaultLocale() {
+        Locale previous = Locale.getDefault();
+        Locale.setDefault(Locale.GERMANY);
+        try {
+            HookLog log = new HookLog("T", sink, stats, 8, 0);
+            HookStats.Counter counter = stats.counter(HookStats.FORCED_TRUE, "ENABLE_X");
+            for (int i = 0; i < 1234; i++) counter.increment();
+            log.drain();
+            assertTrue(sink.lines().get(0), sink.lines().get(0).startsWith("T: ENABLE_X forced true \u00d71,234 in last "));
+        } finally {
+            Locale.setDefault(previous);
+        }
+    }
+
+    @Test
+    public void summariesAndPeriodicTaskWaitForTheInterval() {
+        HookLog log = new HookLog("T", sink, stats, 8, NEVER_MS);
+        AtomicInteger runs = new AtomicInteger();
+        log.setPeriodicTask(runs::incrementAndGet);
+        stats.counter(HookStats.FORCED_TRUE, "ENABLE_X").increment();
+        log.drain();
+        assertEquals(0, runs.get());
+        assertTrue(sink.lines().isEmpty());
+    }
+
+    @Test
+    public void writesLongTextInNumberedPartsWhateverTheLevel() {
+        HookLog log = new HookLog("T", sink, stats, 8, NEVER_MS);
+        log.setLevel(HookLog.LEVEL_ERROR);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < HookLog.MAX_SINK_CHARS * 2 - 1; i++) text.append((char) ('a' + i % 26));
+        text.append("\ud83d\ude00tail"); // The surrogate pair straddles the second cut and must stay whole.
+        log.writeInParts("Stats", text.toString());
+
+        List<String> lines = sink.lines();
+        assertEquals(3, lines.size());
+        StringBuilder joined = new StringBuilder();
+        for (int i = 0; i < lines.size(); i++) {
+            String prefix = "T: Stats " + (i + 1) + "/3 ";
+            assertTrue(lines.get(i), lines.get(i).startsWith(prefix));
+            String part = lines.get(i).substring(prefix.length());
+            assertTrue(part.length() <= HookLog.MAX_SINK_CHARS);
+            joined.append(part);
+        }
+        assertEquals(text.toString(), joined.toString());
+        assertTrue(lines.get(2).startsWith("T: Stats 3/3 \ud83d\ude00"));
+    }
+
+    @Test
+    public void noThreadIsStartedWhenOff() {
+        HookLog log = new HookLog("OffLog", sink, stats, 8, 0);
+        log.setLevel(HookLog.LEVEL_OFF);
+        log.start();
+        assertFalse(hasThread("OffLog-log"));
+    }
+
+    @Test
+    public void startedThreadWakesUpForEachOffer() throws InterruptedException {
+        // The summary interval is an hour, so the entries can only arrive if offer() unparks the drain thread.
+        HookLog log = new HookLog("WakeLog", sink, stats, 8, NEVER_MS);
+        log.start();
+        log.start();
+        assertTrue(hasThread("WakeLog-log"));
+        Thread.sleep(50); // Let the drain thread park.
+        log.info("first");
+        assertTrue(sink.firstLine.await(5, TimeUnit.SECONDS));
+        Thread.sleep(50);
+        log.info("second");
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (sink.lines().size() < 2 && System.nanoTime() < deadline) Thread.sleep(5);
+        assertEquals(Arrays.asList("WakeLog: first", "WakeLog: second"), sink.lines());
+        assertEquals(1, countThreads("WakeLog-log"));
+    }
+
+    private static boolean hasThread(String name) {
+        return countThreads(name) > 0;
+    }
+
+    private static int countThreads(String name) {
+        int count = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().equals(name)) count++;
+        }
+        return count;
+    }
+}
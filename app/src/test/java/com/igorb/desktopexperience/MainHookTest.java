@@ -0,0 +1,134 @@
+package com.igorb.desktopexperience;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.os.SystemProperties;
+import android.window.DesktopExperienceFlags;
+import android.window.DesktopModeFlags;
+
+import com.android.launcher3.taskbar.TaskbarActivityContext;
+import com.android.launcher3.taskbar.TaskbarDesktopExperienceFlags;
+import com.android.wm.shell.shared.desktopmode.DesktopModeStatus;
+import com.android.wm.shell.shared.desktopmode.DesktopStateImpl;
+
+import org.junit.After;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.lang.reflect.Member;
+
+import de.robv.android.xposed.XposedBridge;
+import de.robv.android.xposed.callbacks.XC_LoadPackage;
+
+/** Runs handleLoadPackage end to end against the JVM stand-ins for Xposed and the framework classes. */
+public class MainHookTest {
+    private static final ClassLoader LOADER = MainHookTest.class.getClassLoader();
+    private static final String ENFORCE_PROPERTY = "persist.wm.debug.desktop_mode_enforce_device_restrictions";
+
+    @BeforeClass
+    public static void loadPackages() throws Throwable {
+        MainHook hook = new MainHook();
+        hook.handleLoadPackage(XC_LoadPackage.LoadPackageParam.of("com.android.systemui", LOADER));
+        hook.handleLoadPackage(XC_LoadPackage.LoadPackageParam.of("com.google.android.apps.nexuslauncher", LOADER));
+    }
+
+    @After
+    public void clearDevOptionToggles() {
+        DesktopExperienceFlags.setToggleOverride(null);
+        DesktopModeFlags.setToggleOverride(null);
+        SystemProperties.set(ENFORCE_PROPERTY, "");
+    }
+
+    @Test
+    public void forcesDesktopModeStatusChecks() {
+        assertTrue(DesktopModeStatus.isDesktopModeSupported(null));
+        assertTrue(DesktopModeStatus.isDesktopModeDevOptionSupported(null));
+        assertTrue(DesktopModeStatus.canShowDesktopModeDevOption(null));
+        assertTrue(DesktopModeStatus.canShowDesktopExperienceDevOption(null));
+        assertTrue(DesktopModeStatus.shouldDevOptionBeEnabledByDefault(null));
+        assertTrue(DesktopModeStatus.isDeviceEligibleForDesktopMode(null));
+        assertTrue(DesktopModeStatus.isDeviceEligibleForDesktopModeDevOption(null));
+        assertFalse(DesktopModeStatus.enforceDeviceRestrictions());
+        assertFalse(DesktopModeStatus.useDesktopOverrideDensity(null));
+    }
+
+    @Test
+    public void forcesDesktopStateImplFieldsAndMethods() {
+        DesktopStateImpl state = new DesktopStateImpl(null);
+        assertTrue(state.getCanEnterDesktopMode());
+        assertTrue(state.getEnterDesktopByDefaultOnFreeformDisplay());
+        assertTrue(state.isDesktopModeSupported());
+        assertFalse(state.getCanInternalDisplayHostDesktops());
+        assertFalse(state.getEnforceDeviceRestrictions());
+        assertTrue(state.getUseRoundedCorners());
+        assertTrue(state.isDeviceEligibleForDesktopMode());
+        assertTrue(state.isDesktopModeSupportedOnDisplay(null));
+        assertTrue(state.isDesktopModeSupportedOnDisplay(0));
+    }
+
+    @Test
+    public void forcesFrameworkFlagsAndLeavesOthersAlone() {
+        assertTrue(DesktopExperienceFlags.ENABLE_PROJECTED_DISPLAY_DESKTOP_MODE.isTrue());
+        assertTrue(DesktopExperienceFlags.ENTER_DESKTOP_BY_DEFAULT_ON_FREEFORM_DISPLAYS.isTrue());
+        assertTrue(DesktopExperienceFlags.ENABLE_MULTIPLE_DESKTOPS_BACKEND.isTrue());
+        assertTrue(DesktopExperienceFlags.ENABLE_TASKBAR_CONNECTED_DISPLAYS.isTrue());
+        assertFalse(DesktopExperienceFlags.ENABLE_MULTIPLE_DESKTOPS_FRONTEND.isTrue());
+        assertTrue(DesktopExperienceFlags.ENABLE_CONNECTED_DISPLAYS_DND.isTrue());
+        assertFalse(DesktopExperienceFlags.ENABLE_DRAG_TO_MAXIMIZE.isTrue());
+
+        assertTrue(DesktopModeFlags.ENABLE_DESKTOP_CLOSE_SHORTCUT_BUGFIX.isTrue());
+        assertTrue(DesktopModeFlags.ENABLE_TASKBAR_OVERFLOW.isTrue());
+        assertTrue(DesktopModeFlags.ENABLE_TASKBAR_RECENTS_LAYOUT_TRANSITION.isTrue());
+        assertTrue(DesktopModeFlags.PRESERVE_RECENTS_TASK_CONFIGURATION_ON_RELAUNCH.isTrue());
+        assertFalse(DesktopModeFlags.ENABLE_CAPTION_COMPAT_INSET_FORCE_CONSUMPTION.isTrue());
+    }
+
+    @Test
+    public void forcedFlagsIgnoreTheDevOptionToggle() {
+        DesktopExperienceFlags.setToggleOverride(true);
+        DesktopModeFlags.setToggleOverride(false);
+        assertFalse(DesktopExperienceFlags.ENABLE_MULTIPLE_DESKTOPS_FRONTEND.isTrue());
+        assertTrue(DesktopExperienceFlags.ENABLE_DISPLAY_FOCUS_IN_SHELL_TRANSITIONS.isTrue());
+        assertTrue(DesktopModeFlags.ENABLE_TASKBAR_OVERFLOW.isTrue());
+        assertFalse(DesktopModeFlags.ENABLE_DESKTOP_WINDOWING_MODE.isTrue());
+    }
+
+    @Test
+    public void forcesLauncherTaskbarFlags() {
+        assertTrue(TaskbarDesktopExperienceFlags.enableAltTabKqsOnConnectedDisplays.isTrue());
+        assertTrue(TaskbarDesktopExperienceFlags.enableAltTabKqsFlatenning.isTrue());
+        assertTrue(TaskbarDesktopExperienceFlags.enableTaskbarConnectedDisplays.isTrue());
+        assertTrue(new TaskbarActivityContext().showDesktopTaskbarForFreeformDisplay());
+    }
+
+    @Test
+    public void constantDispatchPatchesFlagsInsteadOfHookingIsTrue() throws NoSuchMethodException {
+        assertEquals(0, XposedBridge.hookCount(DesktopExperienceFlags.class.getMethod("isTrue")));
+        assertEquals(0, XposedBridge.hookCount(DesktopExperienceFlags.DesktopExperienceFlag.class.getMethod("isTrue")));
+        assertEquals(0, XposedBridge.hookCount(DesktopModeFlags.class.getMethod("isTrue")));
+    }
+
+    @Test
+    public void forcesOnlyTheOverriddenProperty() {
+        SystemProperties.set(ENFORCE_PROPERTY, "true");
+        SystemProperties.set("persist.wm.debug.desktop_mode_density", "true");
+        try {
+            assertFalse(SystemProperties.getBoolean(ENFORCE_PROPERTY, true));
+            assertTrue(SystemProperties.getBoolean("persist.wm.debug.desktop_mode_density", false));
+            assertTrue(SystemProperties.getBoolean("persist.wm.debug.unset", true));
+            assertEquals("true", SystemProperties.get(ENFORCE_PROPERTY));
+        } finally {
+            SystemProperties.set("persist.wm.debug.desktop_mode_density", "");
+        }
+    }
+
+    @Test
+    public void ignoresPackagesOutsideTheScope() throws Throwable {
+        Member isDesktopModeSupported = DesktopModeStatus.class.getDeclaredMethod("isDesktopModeSupported", android.content.Context.class);
+        int hooks = XposedBridge.hookCount(isDesktopModeSupported);
+        new MainHook().handleLoadPackage(XC_LoadPackage.LoadPackageParam.of("com.example.unrelated", LOADER));
+        assertEquals(hooks, XposedBridge.hookCount(isDesktopModeSupported));
+    }
+}
@@ -0,0 +1,64 @@
+package com.igorb.desktopexperience;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.window.DesktopExperienceFlags;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+import de.robv.android.xposed.XSharedPreferences;
+import de.robv.android.xposed.XposedBridge;
+import de.robv.android.xposed.callbacks.XC_LoadPackage;
+
+/** MainHook with an override profile in place: a switched-off override gives the natural value back, without a reload. */
+public class OverrideProfileHookTest {
+    private static final String FRONTEND = "DESKTOP_EXPERIENCE_FLAGS.ENABLE_MULTIPLE_DESKTOPS_FRONTEND";
+
+    @ClassRule
+    public static final TemporaryFolder folder = new TemporaryFolder();
+
+    private static OverrideProfileWriter writer;
+
+    @BeforeClass
+    public static void loadSystemUiWithAProfile() throws Throwable {
+        File dataDir = folder.getRoot();
+        XSharedPreferences.setDataDir(dataDir);
+        File prefsDir = new XSharedPreferences("com.igorb.desktopexperience", OverrideProfile.PREFS_NAME).getFile().getParentFile();
+        assertTrue(prefsDir.mkdirs());
+        writer = OverrideProfileWriter.open(new File(prefsDir, OverrideProfile.FILE_NAME), OverrideManifest.OVERRIDE_NAMES);
+        writer.setEnabled(writer.bitOf(FRONTEND), false);
+        new MainHook().handleLoadPackage(XC_LoadPackage.LoadPackageParam.of("com.android.systemui", OverrideProfileHookTest.class.getClassLoader()));
+    }
+
+    @AfterClass
+    public static void closeWriter() throws Exception {
+        writer.close();
+    }
+
+    @Test
+    public void switchedOffOverrideReadsItsNaturalValue() {
+        assertTrue(DesktopExperienceFlags.ENABLE_MULTIPLE_DESKTOPS_FRONTEND.isTrue());
+        assertTrue(DesktopExperienceFlags.ENABLE_MULTIPLE_DESKTOPS_BACKEND.isTrue());
+    }
+
+    @Test
+    public void profileKeepsFlagsOnTheCallbackSoTheyCanBeSwitchedBack() throws Exception {
+        assertEquals(1, XposedBridge.hookCount(DesktopExperienceFlags.class.getMethod("isTrue")));
+        int bit = writer.bitOf(FRONTEND);
+        try {
+            writer.setEnabled(bit, true);
+            assertFalse(DesktopExperienceFlags.ENABLE_MULTIPLE_DESKTOPS_FRONTEND.isTrue());
+        } finally {
+            writer.setEnabled(bit, false);
+        }
+        assertTrue(DesktopExperienceFlags.ENABLE_MULTIPLE_DESKTOPS_FRONTEND.isTrue());
+    }
+}
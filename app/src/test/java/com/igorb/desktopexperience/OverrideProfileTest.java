@@ -0,0 +1,216 @@
+package com.igorb.desktopexperience;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class OverrideProfileTest {
+    /** Spans three bitset words, so a torn copy of the bitset is observable. */
+    private static final String[] NAMES = names("A.member", 130);
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private static String[] names(String prefix, int count) {
+        String[] names = new String[count];
+        for (int i = 0; i < count; i++) names[i] = prefix + i;
+        return names;
+    }
+
+    private File profileFile() {
+        return new File(folder.getRoot(), OverrideProfile.FILE_NAME);
+    }
+
+    @Test
+    public void missingProfileOpensAsNull() throws IOException {
+        assertNull(OverrideProfile.open(profileFile(), NAMES));
+    }
+
+    @Test
+    public void listingReadsWithoutCreatingTheProfile() throws IOException {
+        assertTrue(OverrideProfileReceiver.list(profileFile()).startsWith("no profile at "));
+        assertFalse(profileFile().exists());
+
+        try (OverrideProfileWriter writer = OverrideProfileWriter.open(profileFile(), OverrideManifest.OVERRIDE_NAMES)) {
+            writer.setEnabled(0, false);
+        }
+        String listing = OverrideProfileReceiver.list(profileFile());
+        assertTrue(listing.contains("\noff  " + OverrideManifest.OVERRIDE_NAMES[0]));
+        assertTrue(listing.contains("\non   " + OverrideManifest.OVERRIDE_NAMES[1]));
+    }
+
+    @Test
+    public void newProfileHasEveryOverrideEnabled() throws IOException {
+        try (OverrideProfileWriter writer = OverrideProfileWriter.open(profileFile(), NAMES)) {
+            OverrideProfile profile = OverrideProfile.open(profileFile(), NAMES);
+            for (int bit = 0; bit < NAMES.length; bit++) {
+                assertTrue(writer.isEnabled(bit));
+                assertTrue(profile.isEnabled(bit));
+            }
+            assertEquals(0, profile.generation());
+        }
+    }
+
+    @Test
+    public void newProfileIsReadableByOtherUsers() throws IOException {
+        OverrideProfileWriter.open(profileFile(), NAMES).close();
+        assertTrue(profileFile().canRead());
+        assertEquals(OverrideProfile.fileSize(NAMES.length), profileFile().length());
+    }
+
+    @Test
+    public void openMappingSeesEveryWriteAndItsGeneration() throws IOException {
+        try (OverrideProfileWriter writer = OverrideProfileWriter.open(profileFile(), NAMES)) {
+            OverrideProfile profile = OverrideProfile.open(profileFile(), NAMES);
+            writer.setEnabled(writer.bitOf("A.member70"), false);
+            assertFalse(profile.isEnabled(70));
+            assertTrue(profile.isEnabled(69));
+            assertEquals(2, profile.generation());
+
+            writer.setEnabled(70, true);
+            assertTrue(profile.isEnabled(70));
+            assertEquals(4, profile.generation());
+        }
+    }
+
+    @Test
+    public void reopenedWriterKeepsTheBits() throws IOException {
+        try (OverrideProfileWriter writer = OverrideProfileWriter.open(profileFile(), NAMES)) {
+            writer.setEnabled(3, false);
+        }
+        try (OverrideProfileWriter writer = OverrideProfileWriter.open(profileFile(), NAMES)) {
+            assertFalse(writer.isEnabled(3));
+            assertTrue(writer.isEnabled(4));
+        }
+        assertFalse(OverrideProfile.open(profileFile(), NAMES).isEnabled(3));
+    }
+
+    @Test
+    public void rejectsUnknownOverridesAndBits() throws IOException {
+        try (OverrideProfileWriter writer = OverrideProfileWriter.open(profileFile(), NAMES)) {
+            try {
+                writer.bitOf("B.member0");
+                fail();
+            } catch (IllegalArgumentException expected) {
+            }
+            try {
+                writer.setEnabled(NAMES.length, false);
+                fail();
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+    }
+
+    @Test
+    public void rejectsProfileWrittenForAnotherManifest() throws IOException {
+        OverrideProfileWriter.open(profileFile(), NAMES).close();
+        String[] renamed = names("B.member", NAMES.length);
+        try {
+            OverrideProfile.open(profileFile(), renamed);
+            fail();
+        } catch (IOException expected) {
+        }
+        try {
+            OverrideProfileWriter.open(profileFile(), renamed).close();
+            fail();
+        } catch (IOException expected) {
+        }
+        try {
+            OverrideProfile.open(profileFile(), names("A.member", 200));
+            fail();
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    public void rejectsFileThatIsNotAProfile() throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(profileFile(), "rw")) {
+            file.setLength(OverrideProfile.fileSize(NAMES.length));
+        }
+        try {
+            OverrideProfile.open(profileFile(), NAMES);
+            fail();
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test(timeout = 10_000)
+    public void writerStuckMidUpdateLeavesTheLastBitsInPlace() throws IOException {
+        try (OverrideProfileWriter writer = OverrideProfileWriter.open(profileFile(), NAMES)) {
+            OverrideProfile profile = OverrideProfile.open(profileFile(), NAMES);
+            writer.setEnabled(5, false);
+            assertFalse(profile.isEnabled(5));
+
+            // A writer that died after making the generation odd, having already cleared bit 6.
+            try (RandomAccessFile file = new RandomAccessFile(profileFile(), "rw")) {
+                ByteBuffer buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, file.length())
+                        .order(ByteOrder.LITTLE_ENDIAN);
+                buffer.putInt(OverrideProfile.GENERATION_OFFSET, 3);
+                buffer.putLong(OverrideProfile.BITS_OFFSET, buffer.getLong(OverrideProfile.BITS_OFFSET) & ~(1L << 6));
+            }
+            assertTrue(profile.isEnabled(6));
+            assertFalse(profile.isEnabled(5));
+            assertEquals(3, profile.generation());
+
+            // The next writer recovers the odd generation and the reader moves on.
+            writer.setEnabled(7, false);
+            assertFalse(profile.isEnabled(7));
+            assertFalse(profile.isEnabled(6));
+            assertEquals(4, profile.generation());
+        }
+    }
+
+    @Test(timeout = 60_000)
+    public void readerNeverSeesATornBitset() throws Exception {
+        final OverrideProfileWriter writer = OverrideProfileWriter.open(profileFile(), NAMES);
+        final OverrideProfile profile = OverrideProfile.open(profileFile(), NAMES);
+        final AtomicBoolean done = new AtomicBoolean();
+        final AtomicReference<String> failure = new AtomicReference<>();
+        // Bits are disabled in ascending order and enabled again in descending order, so in every consistent
+        // bitset the disabled bits form a prefix. Only scans that stayed on one generation are checked.
+        Thread reader = new Thread(() -> {
+            while (!done.get() && failure.get() == null) {
+                int generation = profile.generation();
+                int firstOn = -1;
+                int lastOff = -1;
+                for (int bit = 0; bit < NAMES.length; bit++) {
+                    if (profile.isEnabled(bit)) {
+                        if (firstOn < 0) firstOn = bit;
+                    } else {
+                        lastOff = bit;
+                    }
+                }
+                if (profile.generation() == generation && firstOn >= 0 && lastOff > firstOn) {
+                    failure.compareAndSet(null, "generation " + generation + " has bit " + firstOn + " on but bit " + lastOff + " off");
+                }
+            }
+        }, "profile-reader");
+        reader.start();
+        try {
+            for (int round = 0; round < 50 && failure.get() == null; round++) {
+                for (int bit = 0; bit < NAMES.length; bit++) writer.setEnabled(bit, false);
+                for (int bit = NAMES.length - 1; bit >= 0; bit--) writer.setEnabled(bit, true);
+            }
+        } finally {
+            done.set(true);
+            reader.join();
+            writer.close();
+        }
+        assertNull(failure.get());
+    }
+}
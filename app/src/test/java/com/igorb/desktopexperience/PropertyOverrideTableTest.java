@@ -0,0 +1,50 @@
+package com.igorb.desktopexperience;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class PropertyOverrideTableTest {
+    private static final int SYSTEMUI = 1;
+    private static final int LAUNCHER = 2;
+
+    private static PropertyOverrideTable.Entry[] entries(int count) {
+        PropertyOverrideTable.Entry[] entries = new PropertyOverrideTable.Entry[count];
+        for (int i = 0; i < count; i++) entries[i] = new PropertyOverrideTable.Entry("persist.example.key" + i, i % 2 == 0, SYSTEMUI, i);
+        return entries;
+    }
+
+    private static void assertLooksUpEveryKeyAndNothingElse(int count) {
+        PropertyOverrideTable.Entry[] entries = entries(count);
+        PropertyOverrideTable table = PropertyOverrideTable.EMPTY.with(entries, SYSTEMUI);
+        for (PropertyOverrideTable.Entry entry : entries) assertSame(entry, table.lookup(new String(entry.key)));
+        assertNull(table.lookup("persist.example.key"));
+        assertNull(table.lookup("persist.example.keyZ"));
+        assertNull(table.lookup("persist.example.key0_"));
+        assertNull(table.lookup(""));
+        assertNull(table.lookup(null));
+    }
+
+    @Test
+    public void comparesSmallTablesDirectly() {
+        for (int count = 0; count <= PropertyOverrideTable.DIRECT_MAX_ENTRIES; count++) assertLooksUpEveryKeyAndNothingElse(count);
+    }
+
+    @Test
+    public void hashesLargerTables() {
+        assertLooksUpEveryKeyAndNothingElse(PropertyOverrideTable.DIRECT_MAX_ENTRIES + 1);
+        assertLooksUpEveryKeyAndNothingElse(70);
+    }
+
+    @Test
+    public void keepsOnlyEntriesForThePackageAndTheFirstOfEachKey() {
+        PropertyOverrideTable.Entry launcherOnly = new PropertyOverrideTable.Entry("persist.example.launcher", true, LAUNCHER, 0);
+        PropertyOverrideTable.Entry first = new PropertyOverrideTable.Entry("persist.example.shared", true, SYSTEMUI, 1);
+        PropertyOverrideTable.Entry again = new PropertyOverrideTable.Entry("persist.example.shared", false, SYSTEMUI, 2);
+        PropertyOverrideTable table = PropertyOverrideTable.EMPTY.with(new PropertyOverrideTable.Entry[] {launcherOnly, first}, SYSTEMUI)
+                .with(new PropertyOverrideTable.Entry[] {again}, SYSTEMUI);
+        assertNull(table.lookup("persist.example.launcher"));
+        assertSame(first, table.lookup("persist.example.shared"));
+    }
+}
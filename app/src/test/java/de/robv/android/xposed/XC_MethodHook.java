@@ -0,0 +1,70 @@
+package de.robv.android.xposed;
+
+import java.lang.reflect.Member;
+
+/** JVM stand-in for the Xposed API class of the same name; {@link XposedBridge#dispatch} drives the callbacks. */
+public abstract class XC_MethodHook {
+    public XC_MethodHook() {}
+
+    protected void beforeHookedMethod(MethodHookParam param) throws Throwable {}
+
+    protected void afterHookedMethod(MethodHookParam param) throws Throwable {}
+
+    public static final class MethodHookParam {
+        public Member method;
+        public Object thisObject;
+        public Object[] args;
+        private Object result;
+        private Throwable throwable;
+        boolean returnEarly;
+
+        public Object getResult() {
+            return result;
+        }
+
+        public void setResult(Object result) {
+            this.result = result;
+            this.throwable = null;
+            this.returnEarly = true;
+        }
+
+        public Throwable getThrowable() {
+            return throwable;
+        }
+
+        public boolean hasThrowable() {
+            return throwable != null;
+        }
+
+        public void setThrowable(Throwable throwable) {
+            this.throwable = throwable;
+            this.result = null;
+            this.returnEarly = true;
+        }
+
+        public Object getResultOrThrowable() throws Throwable {
+            if (throwable != null) throw throwable;
+            return result;
+        }
+    }
+
+    public class Unhook {
+        private final Member hookMethod;
+
+        Unhook(Member hookMethod) {
+            this.hookMethod = hookMethod;
+        }
+
+        public Member getHookedMethod() {
+            return hookMethod;
+        }
+
+        public XC_MethodHook getCallback() {
+            return XC_MethodHook.this;
+        }
+
+        public void unhook() {
+            XposedBridge.unhookMethod(hookMethod, XC_MethodHook.this);
+        }
+    }
+}
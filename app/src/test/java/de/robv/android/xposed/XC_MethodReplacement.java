@@ -0,0 +1,29 @@
+package de.robv.android.xposed;
+
+/** JVM stand-in for the Xposed API class of the same name. */
+public abstract class XC_MethodReplacement extends XC_MethodHook {
+    public XC_MethodReplacement() {}
+
+    @Override
+    protected final void beforeHookedMethod(MethodHookParam param) throws Throwable {
+        try {
+            param.setResult(replaceHookedMethod(param));
+        } catch (Throwable t) {
+            param.setThrowable(t);
+        }
+    }
+
+    @Override
+    protected final void afterHookedMethod(MethodHookParam param) throws Throwable {}
+
+    protected abstract Object replaceHookedMethod(MethodHookParam param) throws Throwable;
+
+    public static XC_MethodReplacement returnConstant(final Object result) {
+        return new XC_MethodReplacement() {
+            @Override
+            protected Object replaceHookedMethod(MethodHookParam param) {
+                return result;
+            }
+        };
+    }
+}
@@ -0,0 +1,26 @@
+package de.robv.android.xposed;
+
+import java.io.File;
+
+/**
+ * JVM stand-in: only resolves the file, at the path classic Xposed used for a module's shared preferences,
+ * under a data directory tests can point at a temp folder.
+ */
+public final class XSharedPreferences {
+    private static volatile File sDataDir = new File("/data/data");
+
+    private final File file;
+
+    public XSharedPreferences(String packageName, String prefFileName) {
+        file = new File(new File(new File(sDataDir, packageName), "shared_prefs"), prefFileName + ".xml");
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /** Test hook: where every later instance looks for its package's shared_prefs directory. */
+    public static void setDataDir(File dataDir) {
+        sDataDir = dataDir;
+    }
+}
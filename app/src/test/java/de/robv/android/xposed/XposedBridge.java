@@ -0,0 +1,177 @@
+package de.robv.android.xposed;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * JVM stand-in for the Xposed bridge. A plain JVM cannot patch methods, so every hookable method of the
+ * stand-in framework classes calls {@link #dispatch} with the {@link HookSite} it registered for itself;
+ * dispatch then runs the callbacks installed through {@link #hookMethod} the way the real bridge does:
+ * before callbacks in order until one sets a result, the original unless one did, then the after callbacks
+ * of those that ran, in reverse. Constructors dispatch at the end of their body, so only after callbacks
+ * see them as the real bridge would.
+ */
+public final class XposedBridge {
+    private XposedBridge() {}
+
+    /** The unhooked body of a stand-in method. */
+    public interface Original {
+        Object call(Object thisObject, Object[] args) throws Throwable;
+    }
+
+    /** One hookable method; its callbacks are replaced whole so dispatch reads them without locking. */
+    public static final class HookSite {
+        private static final XC_MethodHook[] NONE = new XC_MethodHook[0];
+
+        final Member member;
+        volatile Original original;
+        volatile XC_MethodHook[] callbacks = NONE;
+
+        HookSite(Member member) {
+            this.member = member;
+        }
+    }
+
+    private static final ConcurrentHashMap<Member, HookSite> sites = new ConcurrentHashMap<>();
+    private static final ConcurrentLinkedQueue<String> logs = new ConcurrentLinkedQueue<>();
+
+    public static void log(String text) {
+        logs.add(text);
+    }
+
+    public static void log(Throwable t) {
+        logs.add(t.toString());
+    }
+
+    public static XC_MethodHook.Unhook hookMethod(Member hookMethod, XC_MethodHook callback) {
+        if (hookMethod == null || callback == null) throw new IllegalArgumentException("method and callback must not be null");
+        HookSite site = siteFor(hookMethod);
+        synchronized (site) {
+            XC_MethodHook[] callbacks = Arrays.copyOf(site.callbacks, site.callbacks.length + 1);
+            callbacks[callbacks.length - 1] = callback;
+            site.callbacks = callbacks;
+        }
+        return callback.new Unhook(hookMethod);
+    }
+
+    public static void unhookMethod(Member hookMethod, XC_MethodHook callback) {
+        HookSite site = sites.get(hookMethod);
+        if (site == null) return;
+        synchronized (site) {
+            List<XC_MethodHook> callbacks = new ArrayList<>(Arrays.asList(site.callbacks));
+            callbacks.remove(callback);
+            site.callbacks = callbacks.toArray(HookSite.NONE);
+        }
+    }
+
+    public static Object invokeOriginalMethod(Member method, Object thisObject, Object[] args)
+            throws IllegalAccessException, InvocationTargetException {
+        HookSite site = sites.get(method);
+        if (site == null || site.original == null) throw new IllegalArgumentException(method + " is not a stand-in hook site");
+        try {
+            return site.original.call(thisObject, args);
+        } catch (Throwable t) {
+            throw new InvocationTargetException(t);
+        }
+    }
+
+    // --- Test-only surface, used by the stand-in framework classes and the tests ---
+
+    /** Registers the body of a stand-in method; called once from the stand-in class's static initializer. */
+    public static HookSite site(Member member, Original original) {
+        HookSite site = siteFor(member);
+        site.original = original;
+        return site;
+    }
+
+    public static Object dispatch(HookSite site, Object thisObject, Object[] args) throws Throwable {
+        XC_MethodHook[] callbacks = site.callbacks;
+        if (callbacks.length == 0) return site.original.call(thisObject, args);
+
+        XC_MethodHook.MethodHookParam param = new XC_MethodHook.MethodHookParam();
+        param.method = site.member;
+        param.thisObject = thisObject;
+        param.args = args;
+        int ran = 0;
+        while (ran < callbacks.length) {
+            try {
+                callbacks[ran++].beforeHookedMethod(param);
+            } catch (Throwable t) {
+                log(t);
+                param.setResult(null);
+                param.returnEarly = false;
+                continue;
+            }
+            if (param.returnEarly) break;
+        }
+        if (!param.returnEarly) {
+            try {
+                param.setResult(site.original.call(thisObject, param.args));
+            } catch (Throwable t) {
+                param.setThrowable(t);
+            }
+        }
+        for (int i = ran - 1; i >= 0; i--) {
+            Object lastResult = param.getResult();
+            Throwable lastThrowable = param.getThrowable();
+            try {
+                callbacks[i].afterHookedMethod(param);
+            } catch (Throwable t) {
+                log(t);
+                if (lastThrowable == null) param.setResult(lastResult);
+                else param.setThrowable(lastThrowable);
+            }
+        }
+        return param.getResultOrThrowable();
+    }
+
+    /** {@link #dispatch} for stand-in methods that declare no checked exceptions. */
+    public static Object call(HookSite site, Object thisObject, Object... args) {
+        try {
+            return dispatch(site, thisObject, args);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new UndeclaredThrowableException(t);
+        }
+    }
+
+    public static Method declaredMethod(Class<?> clazz, String name, Class<?>... parameterTypes) {
+        try {
+            return clazz.getDeclaredMethod(name, parameterTypes);
+        } catch (NoSuchMethodException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    public static Constructor<?> declaredConstructor(Class<?> clazz, Class<?>... parameterTypes) {
+        try {
+            return clazz.getDeclaredConstructor(parameterTypes);
+        } catch (NoSuchMethodException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /** Number of callbacks currently installed on {@code member}. */
+    public static int hookCount(Member member) {
+        HookSite site = sites.get(member);
+        return site == null ? 0 : site.callbacks.length;
+    }
+
+    /** Everything logged so far, oldest first. */
+    public static List<String> logs() {
+        return new ArrayList<>(logs);
+    }
+
+    private static HookSite siteFor(Member member) {
+        return sites.computeIfAbsent(member, HookSite::new);
+    }
+}
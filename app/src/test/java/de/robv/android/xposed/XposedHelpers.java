@@ -0,0 +1,244 @@
+package de.robv.android.xposed;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * JVM stand-in for the Xposed helpers the module uses. Lookups are cached by name the way the real helpers
+ * cache them, so benchmarks against {@link #setBooleanField} pay the same string key and map probe per call.
+ */
+public final class XposedHelpers {
+    private XposedHelpers() {}
+
+    private static final Map<String, Field> fieldCache = new HashMap<>();
+    private static final Map<String, Method> methodCache = new HashMap<>();
+    private static final Map<String, Constructor<?>> constructorCache = new HashMap<>();
+
+    public static final class ClassNotFoundError extends Error {
+        public ClassNotFoundError(Throwable cause) {
+            super(cause);
+        }
+
+        public ClassNotFoundError(String detailMessage, Throwable cause) {
+            super(detailMessage, cause);
+        }
+    }
+
+    public static Class<?> findClass(String className, ClassLoader classLoader) {
+        if (classLoader == null) classLoader = XposedHelpers.class.getClassLoader();
+        switch (className) {
+            case "boolean": return boolean.class;
+            case "byte": return byte.class;
+            case "char": return char.class;
+            case "short": return short.class;
+            case "int": return int.class;
+            case "long": return long.class;
+            case "float": return float.class;
+            case "double": return double.class;
+            default:
+                try {
+                    return Class.forName(className, false, classLoader);
+                } catch (ClassNotFoundException e) {
+                    throw new ClassNotFoundError(e);
+                }
+        }
+    }
+
+    public static Class<?> findClassIfExists(String className, ClassLoader classLoader) {
+        try {
+            return findClass(className, classLoader);
+        } catch (ClassNotFoundError e) {
+            return null;
+        }
+    }
+
+    public static Field findField(Class<?> clazz, String fieldName) {
+        String fullFieldName = clazz.getName() + '#' + fieldName;
+        synchronized (fieldCache) {
+            if (fieldCache.containsKey(fullFieldName)) {
+                Field field = fieldCache.get(fullFieldName);
+                if (field == null) throw new NoSuchFieldError(fullFieldName);
+                return field;
+            }
+        }
+        Field field = null;
+        for (Class<?> c = clazz; c != null && field == null; c = c.getSuperclass()) {
+            try {
+                field = c.getDeclaredField(fieldName);
+            } catch (NoSuchFieldException ignored) {
+                // Keep looking in the superclass.
+            }
+        }
+        if (field != null) field.setAccessible(true);
+        synchronized (fieldCache) {
+            fieldCache.put(fullFieldName, field);
+        }
+        if (field == null) throw new NoSuchFieldError(fullFieldName);
+        return field;
+    }
+
+    public static Method findMethodExact(Class<?> clazz, String methodName, Object... parameterTypes) {
+        Class<?>[] types = parameterClasses(clazz.getClassLoader(), parameterTypes);
+        String fullMethodName = clazz.getName() + '#' + methodName + describe(types) + "#exact";
+        synchronized (methodCache) {
+            Method cached = methodCache.get(fullMethodName);
+            if (cached != null) return cached;
+        }
+        try {
+            Method method = clazz.getDeclaredMethod(methodName, types);
+            method.setAccessible(true);
+            synchronized (methodCache) {
+                methodCache.put(fullMethodName, method);
+            }
+            return method;
+        } catch (NoSuchMethodException e) {
+            throw new NoSuchMethodError(fullMethodName);
+        }
+    }
+
+    public static Constructor<?> findConstructorExact(Class<?> clazz, Object... parameterTypes) {
+        Class<?>[] types = parameterClasses(clazz.getClassLoader(), parameterTypes);
+        String fullConstructorName = clazz.getName() + describe(types) + "#exact";
+        synchronized (constructorCache) {
+            Constructor<?> cached = constructorCache.get(fullConstructorName);
+            if (cached != null) return cached;
+        }
+        try {
+            Constructor<?> constructor = clazz.getDeclaredConstructor(types);
+            constructor.setAccessible(true);
+            synchronized (constructorCache) {
+                constructorCache.put(fullConstructorName, constructor);
+            }
+            return constructor;
+        } catch (NoSuchMethodException e) {
+            throw new NoSuchMethodError(fullConstructorName);
+        }
+    }
+
+    public static XC_MethodHook.Unhook findAndHookMethod(Class<?> clazz, String methodName, Object... parameterTypesAndCallback) {
+        XC_MethodHook callback = callbackOf(parameterTypesAndCallback);
+        Object[] parameterTypes = withoutCallback(parameterTypesAndCallback);
+        return XposedBridge.hookMethod(findMethodExact(clazz, methodName, parameterTypes), callback);
+    }
+
+    public static XC_MethodHook.Unhook findAndHookMethod(String className, ClassLoader classLoader, String methodName,
+                                                         Object... parameterTypesAndCallback) {
+        return findAndHookMethod(findClass(className, classLoader), methodName, parameterTypesAndCallback);
+    }
+
+    public static XC_MethodHook.Unhook findAndHookConstructor(Class<?> clazz, Object... parameterTypesAndCallback) {
+        XC_MethodHook callback = callbackOf(parameterTypesAndCallback);
+        Object[] parameterTypes = withoutCallback(parameterTypesAndCallback);
+        return XposedBridge.hookMethod(findConstructorExact(clazz, parameterTypes), callback);
+    }
+
+    public static Object getStaticObjectField(Class<?> clazz, String fieldName) {
+        try {
+            return findField(clazz, fieldName).get(null);
+        } catch (IllegalAccessException e) {
+            throw new IllegalAccessError(e.getMessage());
+        }
+    }
+
+    public static boolean getBooleanField(Object obj, String fieldName) {
+        try {
+            return findField(obj.getClass(), fieldName).getBoolean(obj);
+        } catch (IllegalAccessException e) {
+            throw new IllegalAccessError(e.getMessage());
+        }
+    }
+
+    public static void setBooleanField(Object obj, String fieldName, boolean value) {
+        try {
+            findField(obj.getClass(), fieldName).setBoolean(obj, value);
+        } catch (IllegalAccessException e) {
+            throw new IllegalAccessError(e.getMessage());
+        }
+    }
+
+    public static Object callStaticMethod(Class<?> clazz, String methodName, Object... args) {
+        for (Method method : clazz.getDeclaredMethods()) {
+            if (!method.getName().equals(methodName) || !Modifier.isStatic(method.getModifiers()) || !accepts(method.getParameterTypes(), args)) {
+                continue;
+            }
+            try {
+                method.setAccessible(true);
+                return method.invoke(null, args);
+            } catch (IllegalAccessException e) {
+                throw new IllegalAccessError(e.getMessage());
+            } catch (InvocationTargetException e) {
+                throw new InvocationTargetError(e.getCause());
+            }
+        }
+        throw new NoSuchMethodError(clazz.getName() + '#' + methodName + " for " + args.length + " arguments");
+    }
+
+    public static final class InvocationTargetError extends Error {
+        public InvocationTargetError(Throwable cause) {
+            super(cause);
+        }
+    }
+
+    private static XC_MethodHook callbackOf(Object[] parameterTypesAndCallback) {
+        if (parameterTypesAndCallback.length == 0 || !(parameterTypesAndCallback[parameterTypesAndCallback.length - 1] instanceof XC_MethodHook)) {
+            throw new IllegalArgumentException("no callback defined");
+        }
+        return (XC_MethodHook) parameterTypesAndCallback[parameterTypesAndCallback.length - 1];
+    }
+
+    private static Object[] withoutCallback(Object[] parameterTypesAndCallback) {
+        Object[] parameterTypes = new Object[parameterTypesAndCallback.length - 1];
+        System.arraycopy(parameterTypesAndCallback, 0, parameterTypes, 0, parameterTypes.length);
+        return parameterTypes;
+    }
+
+    private static Class<?>[] parameterClasses(ClassLoader classLoader, Object[] parameterTypes) {
+        Class<?>[] classes = new Class<?>[parameterTypes.length];
+        for (int i = 0; i < parameterTypes.length; i++) {
+            Object type = parameterTypes[i];
+            if (type instanceof Class) classes[i] = (Class<?>) type;
+            else if (type instanceof String) classes[i] = findClass((String) type, classLoader);
+            else throw new ClassNotFoundError("parameter type must be a Class or a String: " + type, null);
+        }
+        return classes;
+    }
+
+    private static String describe(Class<?>[] types) {
+        StringBuilder sb = new StringBuilder("(");
+        for (int i = 0; i < types.length; i++) {
+            if (i > 0) sb.append(',');
+            sb.append(types[i].getCanonicalName());
+        }
+        return sb.append(')').toString();
+    }
+
+    private static boolean accepts(Class<?>[] parameterTypes, Object[] args) {
+        if (parameterTypes.length != args.length) return false;
+        for (int i = 0; i < args.length; i++) {
+            Class<?> type = parameterTypes[i];
+            if (args[i] == null) {
+                if (type.isPrimitive()) return false;
+            } else if (!boxed(type).isInstance(args[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Class<?> boxed(Class<?> type) {
+        if (!type.isPrimitive()) return type;
+        if (type == boolean.class) return Boolean.class;
+        if (type == int.class) return Integer.class;
+        if (type == long.class) return Long.class;
+        if (type == byte.class) return Byte.class;
+        if (type == char.class) return Character.class;
+        if (type == short.class) return Short.class;
+        if (type == float.class) return Float.class;
+        return Double.class;
+    }
+}
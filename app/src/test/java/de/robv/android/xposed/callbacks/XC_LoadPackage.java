@@ -0,0 +1,23 @@
+package de.robv.android.xposed.callbacks;
+
+/** JVM stand-in for the Xposed API class of the same name; only the load parameters are modelled. */
+public abstract class XC_LoadPackage {
+    public static final class LoadPackageParam {
+        public String packageName;
+        public String processName;
+        public ClassLoader classLoader;
+        public boolean isFirstApplication;
+
+        public LoadPackageParam() {}
+
+        /** Test helper: parameters for {@code packageName} loaded with {@code classLoader} into a process of the same name. */
+        public static LoadPackageParam of(String packageName, ClassLoader classLoader) {
+            LoadPackageParam param = new LoadPackageParam();
+            param.packageName = packageName;
+            param.processName = packageName;
+            param.classLoader = classLoader;
+            param.isFirstApplication = true;
+            return param;
+        }
+    }
+}
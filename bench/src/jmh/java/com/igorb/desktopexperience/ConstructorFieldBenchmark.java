@@ -0,0 +1,82 @@
+package com.igorb.desktopexperience;
+
+import android.content.Context;
+
+import com.android.wm.shell.shared.desktopmode.DesktopStateImpl;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import de.robv.android.xposed.XC_MethodHook;
+import de.robv.android.xposed.XposedHelpers;
+
+/**
+ * Cost of one DesktopStateImpl construction with its state fields forced after the constructor, through a
+ * {@link ConstructorFieldPatcher} built once ({@code patcher}) against one {@link XposedHelpers#setBooleanField}
+ * call per field ({@code setBooleanField}), and with the constructor left unhooked ({@code none}).
+ * Only the field writes differ; both hooks are installed the same way, outside MainHook.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConstructorFieldBenchmark {
+    private static final String TARGET_ID = "DESKTOP_STATE_IMPL_FIELDS";
+
+    @Param({"none", "setBooleanField", "patcher"})
+    public String fieldWrites;
+
+    @Setup
+    public void hookConstructor() {
+        OverrideTarget target = null;
+        for (OverrideTarget t : OverrideManifest.TARGETS) {
+            if (t.id.equals(TARGET_ID)) target = t;
+        }
+        if (target == null) throw new IllegalStateException(TARGET_ID + " is not in the override manifest");
+        final String[] forceTrue = target.forceTrue;
+        final String[] forceFalse = target.forceFalse;
+
+        XC_MethodHook hook;
+        if (fieldWrites.equals("setBooleanField")) {
+            hook = new XC_MethodHook() {
+                @Override
+                protected void afterHookedMethod(MethodHookParam param) {
+                    for (String name : forceTrue) XposedHelpers.setBooleanField(param.thisObject, name, true);
+                    for (String name : forceFalse) XposedHelpers.setBooleanField(param.thisObject, name, false);
+                }
+            };
+        } else if (fieldWrites.equals("patcher")) {
+            final ConstructorFieldPatcher patcher = ConstructorFieldPatcher.forClass(DesktopStateImpl.class,
+                    forceTrue, target.forceTrueBits, forceFalse, target.forceFalseBits, (name, t) -> {
+                        throw new IllegalStateException("cannot resolve " + name, t);
+                    });
+            hook = new XC_MethodHook() {
+                @Override
+                protected void afterHookedMethod(MethodHookParam param) throws Throwable {
+                    patcher.apply(param.thisObject, bit -> true);
+                }
+            };
+        } else {
+            return;
+        }
+        XposedHelpers.findAndHookConstructor(DesktopStateImpl.class, Context.class, hook);
+    }
+
+    @Benchmark
+    public DesktopStateImpl construct() {
+        return new DesktopStateImpl(null);
+    }
+}
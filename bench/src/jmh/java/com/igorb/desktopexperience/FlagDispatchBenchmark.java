@@ -0,0 +1,64 @@
+package com.igorb.desktopexperience;
+
+import android.os.SystemProperties;
+import android.window.DesktopExperienceFlags;
+import android.window.DesktopModeFlags;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import de.robv.android.xposed.callbacks.XC_LoadPackage;
+
+/**
+ * Cost of one flag read with SystemUI's flag overrides installed through the isTrue() callback ({@code callback}),
+ * baked into the flag instances by FlagStatePatcher ({@code constant}), or not installed at all ({@code none}).
+ * Every mode runs in its own fork, so nothing stays hooked or patched across them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FlagDispatchBenchmark {
+    @Param({"none", "callback", "constant"})
+    public String dispatch;
+
+    @Setup
+    public void loadPackage() throws Throwable {
+        if ("none".equals(dispatch)) return;
+        SystemProperties.set(MainHook.PROP_FLAG_DISPATCH, dispatch);
+        new MainHook().handleLoadPackage(XC_LoadPackage.LoadPackageParam.of("com.android.systemui", getClass().getClassLoader()));
+    }
+
+    @Benchmark
+    public boolean targetFlagRead() {
+        return DesktopExperienceFlags.ENABLE_MULTIPLE_DESKTOPS_BACKEND.isTrue();
+    }
+
+    @Benchmark
+    public boolean nonTargetFlagRead() {
+        return DesktopExperienceFlags.ENABLE_DRAG_TO_MAXIMIZE.isTrue();
+    }
+
+    @Benchmark
+    public boolean targetEnumFlagRead() {
+        return DesktopModeFlags.ENABLE_TASKBAR_OVERFLOW.isTrue();
+    }
+
+    @Benchmark
+    public boolean nonTargetEnumFlagRead() {
+        return DesktopModeFlags.ENABLE_MINIMIZE_BUTTON.isTrue();
+    }
+}
@@ -0,0 +1,138 @@
+package com.igorb.desktopexperience;
+
+import android.window.DesktopExperienceFlags;
+import android.window.DesktopModeFlags;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-read cost of deciding whether a flag instance is forced: the published override tables against the
+ * HashSet.contains checks the isTrue() callbacks used before them, at 1, 4 and 16 reader threads.
+ * Reads walk a shuffled mix of stand-in flags in which about one in eight is a target, as in a hooked
+ * process where most isTrue() calls are for flags the module leaves alone.
+ */
+public class FlagLookupBenchmark {
+    private static final int STANDALONE_FLAGS = 240;
+    private static final int READS = 4096;
+
+    @State(Scope.Benchmark)
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    @Warmup(iterations = 3, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    @Fork(1)
+    public abstract static class Lookups {
+        private Object[] flagReads;
+        private Object[] enumReads;
+        private Set<Object> forceTrue;
+        private Set<Object> forceFalse;
+        private Set<Object> enumForceTrue;
+        private FlagOverrideTable table;
+        private EnumFlagOverrideTable enumTable;
+
+        @Setup
+        public void setUp() {
+            List<Object> flags = new ArrayList<>();
+            Collections.addAll(flags, (Object[]) DesktopExperienceFlags.values());
+            for (int i = 0; i < STANDALONE_FLAGS; i++) flags.add(new DesktopExperienceFlags.DesktopExperienceFlag(() -> false, true));
+
+            forceTrue = new HashSet<>();
+            forceFalse = new HashSet<>();
+            enumForceTrue = new HashSet<>();
+            table = FlagOverrideTable.EMPTY;
+            enumTable = EnumFlagOverrideTable.EMPTY;
+            int bit = 0;
+            for (int i = 0; i < flags.size(); i += 8) {
+                boolean value = i % 32 != 0;
+                (value ? forceTrue : forceFalse).add(flags.get(i));
+                table = table.with(flags.get(i), value, bit++);
+            }
+            DesktopModeFlags[] constants = DesktopModeFlags.values();
+            for (int i = 0; i < constants.length; i += 3) {
+                enumForceTrue.add(constants[i]);
+                enumTable = enumTable.with(constants[i], true, bit++);
+            }
+
+            Random random = new Random(42);
+            flagReads = new Object[READS];
+            enumReads = new Object[READS];
+            for (int i = 0; i < READS; i++) {
+                flagReads[i] = flags.get(random.nextInt(flags.size()));
+                enumReads[i] = constants[random.nextInt(constants.length)];
+            }
+        }
+
+        @Benchmark
+        public int hashSetContains(Cursor cursor) {
+            Object flag = flagReads[cursor.next()];
+            if (forceFalse.contains(flag)) return FlagOverrideTable.FORCE_FALSE;
+            if (forceTrue.contains(flag)) return FlagOverrideTable.FORCE_TRUE;
+            return FlagOverrideTable.NONE;
+        }
+
+        @Benchmark
+        public int overrideTable(Cursor cursor) {
+            return table.entry(flagReads[cursor.next()]);
+        }
+
+        @Benchmark
+        public int enumHashSetContains(Cursor cursor) {
+            return enumForceTrue.contains(enumReads[cursor.next()]) ? FlagOverrideTable.FORCE_TRUE : FlagOverrideTable.NONE;
+        }
+
+        @Benchmark
+        public int enumOverrideTable(Cursor cursor) {
+            return enumTable.entry(enumReads[cursor.next()]);
+        }
+    }
+
+    /** Each reader thread walks the shared read mix from its own offset. */
+    @State(Scope.Thread)
+    public static class Cursor {
+        private static int nextStart;
+        private int index;
+
+        @Setup
+        public void setUp() {
+            synchronized (Cursor.class) {
+                index = nextStart;
+                nextStart += READS / 16;
+            }
+        }
+
+        int next() {
+            index = (index + 1) & (READS - 1);
+            return index;
+        }
+    }
+
+    @Threads(1)
+    public static class Threads1 extends Lookups {
+    }
+
+    @Threads(4)
+    public static class Threads4 extends Lookups {
+    }
+
+    @Threads(16)
+    public static class Threads16 extends Lookups {
+    }
+}
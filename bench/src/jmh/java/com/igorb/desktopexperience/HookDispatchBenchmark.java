@@ -0,0 +1,79 @@
+package com.igorb.desktopexperience;
+
+import android.os.SystemProperties;
+import android.window.DesktopExperienceFlags;
+import android.window.DesktopModeFlags;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import de.robv.android.xposed.callbacks.XC_LoadPackage;
+
+/**
+ * Cost of one flag read and one property read as a hooked process sees it, with SystemUI's hooks installed
+ * by handleLoadPackage ({@code hooked=true}) against the same stand-ins left alone ({@code hooked=false}).
+ * Every parameter combination runs in its own fork, so nothing stays hooked across them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HookDispatchBenchmark {
+    private static final String OVERRIDDEN_PROPERTY = "persist.wm.debug.desktop_mode_enforce_device_restrictions";
+    private static final String OTHER_PROPERTY = "persist.wm.debug.desktop_mode_density";
+
+    @Param({"false", "true"})
+    public boolean hooked;
+
+    @Setup
+    public void loadPackage() throws Throwable {
+        SystemProperties.set(OVERRIDDEN_PROPERTY, "true");
+        SystemProperties.set(OTHER_PROPERTY, "true");
+        if (hooked) {
+            new MainHook().handleLoadPackage(XC_LoadPackage.LoadPackageParam.of("com.android.systemui", getClass().getClassLoader()));
+        }
+    }
+
+    @Benchmark
+    public boolean targetFlagRead() {
+        return DesktopExperienceFlags.ENABLE_MULTIPLE_DESKTOPS_BACKEND.isTrue();
+    }
+
+    @Benchmark
+    public boolean nonTargetFlagRead() {
+        return DesktopExperienceFlags.ENABLE_DRAG_TO_MAXIMIZE.isTrue();
+    }
+
+    @Benchmark
+    public boolean targetEnumFlagRead() {
+        return DesktopModeFlags.ENABLE_TASKBAR_OVERFLOW.isTrue();
+    }
+
+    @Benchmark
+    public boolean nonTargetEnumFlagRead() {
+        return DesktopModeFlags.ENABLE_MINIMIZE_BUTTON.isTrue();
+    }
+
+    @Benchmark
+    public boolean overriddenPropertyRead() {
+        return SystemProperties.getBoolean(OVERRIDDEN_PROPERTY, true);
+    }
+
+    @Benchmark
+    public boolean otherPropertyRead() {
+        return SystemProperties.getBoolean(OTHER_PROPERTY, false);
+    }
+}
@@ -0,0 +1,177 @@
+package com.igorb.desktopexperience;
+
+import android.os.SystemProperties;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import de.robv.android.xposed.XC_MethodHook;
+import de.robv.android.xposed.XposedHelpers;
+import de.robv.android.xposed.callbacks.XC_LoadPackage;
+
+/**
+ * What the SystemProperties.getBoolean hook costs the reads it does not override, which are nearly all of them:
+ * PropertyOverrideTable against the single equals() check the hook made before the table existed.
+ * {@link Lookup} compares the two checks alone, with the shipped one-key table (compared directly) and with a table
+ * of {@link #WIDE_KEYS} (length mask and hash) against an equals() per key; {@link Hook} compares whole getBoolean
+ * calls with no hook, the old callback, or the module's hooks as installed by handleLoadPackage.
+ */
+public class PropertyLookupBenchmark {
+    private static final String OVERRIDDEN_KEY = "persist.wm.debug.desktop_mode_enforce_device_restrictions";
+
+    /** Keys a SystemUI process reads often; several share the overridden key's length or prefix. */
+    private static final String[] OTHER_KEYS = {
+            "persist.wm.debug.desktop_mode",
+            "persist.wm.debug.desktop_mode_density",
+            "persist.wm.debug.desktop_use_rounded_corners",
+            "persist.wm.debug.desktop_mode_enforce_device_restrictionz",
+            "persist.wm.debug.desktop_change_display_window_bounds_ok",
+            "persist.sys.debug.multi_window",
+            "ro.config.low_ram",
+            "debug.layout",
+            "persist.debug.dalvik.vm.core_platform_api_policy",
+            "ro.debuggable",
+            "persist.sysui.notification.builder_extras_override",
+            "persist.wm.debug.enter_desktop_by_default_on_freeform_display",
+            "ro.surface_flinger.supports_background_blur",
+            "persist.wm.debug.desktop_transitions.tiling_enable_restore",
+            "sys.boot_completed",
+            "persist.wm.debug.desktop_mode_enforce_device_restriction_",
+    };
+
+    /** Overridden keys of a hypothetical larger manifest, past PropertyOverrideTable.DIRECT_MAX_ENTRIES. */
+    private static final String[] WIDE_KEYS = {
+            OVERRIDDEN_KEY,
+            "persist.wm.debug.desktop_experience_devopts",
+            "persist.wm.debug.desktop_mode_max_task_limit",
+            "persist.wm.debug.enable_multiple_desktops",
+            "persist.wm.debug.desktop_mode_connected_displays",
+            "persist.sysui.desktop.taskbar_overflow",
+            "persist.wm.debug.desktop_windowing_display_switch",
+            "persist.wm.debug.freeform_default_on_external",
+    };
+
+    private static int nextKey(int[] cursor) {
+        int i = cursor[0] + 1;
+        if (i == OTHER_KEYS.length) i = 0;
+        cursor[0] = i;
+        return i;
+    }
+
+    @State(Scope.Thread)
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    @Warmup(iterations = 3, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    @Fork(1)
+    public static class Lookup {
+        private final int[] cursor = new int[1];
+        private PropertyOverrideTable table;
+        private PropertyOverrideTable wideTable;
+
+        @Setup
+        public void setUp() {
+            table = PropertyOverrideTable.EMPTY.with(OverrideManifest.BOOLEAN_PROPERTY_OVERRIDES, OverrideManifest.PACKAGE_SYSTEMUI);
+            PropertyOverrideTable.Entry[] wide = new PropertyOverrideTable.Entry[WIDE_KEYS.length];
+            for (int i = 0; i < wide.length; i++) wide[i] = new PropertyOverrideTable.Entry(WIDE_KEYS[i], false, OverrideManifest.PACKAGE_SYSTEMUI, i);
+            wideTable = PropertyOverrideTable.EMPTY.with(wide, OverrideManifest.PACKAGE_SYSTEMUI);
+        }
+
+        @Benchmark
+        public boolean wideEqualsNonMatching() {
+            String key = OTHER_KEYS[nextKey(cursor)];
+            for (String overridden : WIDE_KEYS) {
+                if (overridden.equals(key)) return true;
+            }
+            return false;
+        }
+
+        @Benchmark
+        public boolean wideTableNonMatching() {
+            return wideTable.lookup(OTHER_KEYS[nextKey(cursor)]) != null;
+        }
+
+        @Benchmark
+        public boolean oldEqualsNonMatching() {
+            return OVERRIDDEN_KEY.equals(OTHER_KEYS[nextKey(cursor)]);
+        }
+
+        @Benchmark
+        public boolean tableNonMatching() {
+            return table.lookup(OTHER_KEYS[nextKey(cursor)]) != null;
+        }
+
+        @Benchmark
+        public boolean oldEqualsMatching() {
+            return OVERRIDDEN_KEY.equals(OVERRIDDEN_KEY);
+        }
+
+        @Benchmark
+        public boolean tableMatching() {
+            return table.lookup(OVERRIDDEN_KEY) != null;
+        }
+    }
+
+    @State(Scope.Thread)
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    @Warmup(iterations = 3, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    @Fork(1)
+    public static class Hook {
+        private final int[] cursor = new int[1];
+
+        @Param({"none", "oldEquals", "tableOnly", "table"})
+        public String hook;
+        private volatile PropertyOverrideTable overrides;
+
+        @Setup
+        public void setUp() throws Throwable {
+            for (String key : OTHER_KEYS) SystemProperties.set(key, "true");
+            SystemProperties.set(OVERRIDDEN_KEY, "true");
+            if (hook.equals("oldEquals")) {
+                // The callback as it was, minus its per-hit log line.
+                XposedHelpers.findAndHookMethod(SystemProperties.class, "getBoolean", String.class, boolean.class, new XC_MethodHook() {
+                    @Override
+                    protected void beforeHookedMethod(MethodHookParam param) {
+                        if (OVERRIDDEN_KEY.equals(param.args[0])) param.setResult(false);
+                    }
+                });
+            } else if (hook.equals("tableOnly")) {
+                // PropertyOverrideHook's lookup as the only installed hook, so the stand-in dispatch is as monomorphic
+                // as it is for oldEquals; "table" adds every other hook handleLoadPackage installs for SystemUI.
+                overrides = PropertyOverrideTable.EMPTY.with(OverrideManifest.BOOLEAN_PROPERTY_OVERRIDES, OverrideManifest.PACKAGE_SYSTEMUI);
+                XposedHelpers.findAndHookMethod(SystemProperties.class, "getBoolean", String.class, boolean.class, new XC_MethodHook() {
+                    @Override
+                    protected void beforeHookedMethod(MethodHookParam param) {
+                        PropertyOverrideTable.Entry entry = overrides.lookup((String) param.args[0]);
+                        if (entry != null) param.setResult(entry.value);
+                    }
+                });
+            } else if (hook.equals("table")) {
+                new MainHook().handleLoadPackage(XC_LoadPackage.LoadPackageParam.of("com.android.systemui", getClass().getClassLoader()));
+            }
+        }
+
+        @Benchmark
+        public boolean getBooleanNonMatching() {
+            return SystemProperties.getBoolean(OTHER_KEYS[nextKey(cursor)], false);
+        }
+
+        @Benchmark
+        public boolean getBooleanMatching() {
+            return SystemProperties.getBoolean(OVERRIDDEN_KEY, true);
+        }
+    }
+}
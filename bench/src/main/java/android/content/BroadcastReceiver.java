@@ -0,0 +1,10 @@
+package android.content;
+
+/** Stand-in for the android.jar class, which :app's unit tests get from the SDK. */
+public abstract class BroadcastReceiver {
+    public abstract void onReceive(Context context, Intent intent);
+
+    public final void setResultCode(int code) {}
+
+    public final void setResultData(String data) {}
+}
@@ -0,0 +1,8 @@
+package android.content;
+
+import java.io.File;
+
+/** Stand-in for the android.jar class, which :app's unit tests get from the SDK. */
+public abstract class Context {
+    public abstract File getSharedPreferencesPath(String name);
+}
@@ -0,0 +1,20 @@
+package android.content;
+
+/** Stand-in for the android.jar class, which :app's unit tests get from the SDK. */
+public class Intent {
+    public String getAction() {
+        return null;
+    }
+
+    public boolean hasExtra(String name) {
+        return false;
+    }
+
+    public boolean getBooleanExtra(String name, boolean defaultValue) {
+        return defaultValue;
+    }
+
+    public String getStringExtra(String name) {
+        return null;
+    }
+}
@@ -0,0 +1,6 @@
+package android.view;
+
+/** Stand-in for the android.jar class, which :app's unit tests get from the SDK. */
+public final class Display {
+    private Display() {}
+}
@@ -0,0 +1,41 @@
+import org.gradle.api.DefaultTask
+import org.gradle.api.GradleException
+import org.gradle.api.file.DirectoryProperty
+import org.gradle.api.file.RegularFileProperty
+import org.gradle.api.provider.Property
+import org.gradle.api.tasks.Input
+import org.gradle.api.tasks.InputFile
+import org.gradle.api.tasks.OutputDirectory
+import org.gradle.api.tasks.PathSensitive
+import org.gradle.api.tasks.PathSensitivity
+import org.gradle.api.tasks.TaskAction
+
+import groovy.json.JsonSlurper
+
+/** Validates overrides.json with {@link OverrideManifestCompiler} and writes the generated OverrideManifest.java. */
+abstract class CompileOverrideManifest extends DefaultTask {
+    @InputFile
+    @PathSensitive(PathSensitivity.NAME_ONLY)
+    abstract RegularFileProperty getManifest()
+
+    @Input
+    abstract Property<String> getJavaPackage()
+
+    @OutputDirectory
+    abstract DirectoryProperty getOutputDir()
+
+    @TaskAction
+    void compile() {
+        File manifestFile = manifest.get().asFile
+        def model = new JsonSlurper().parse(manifestFile)
+        List<String> errors = OverrideManifestCompiler.validate(model)
+        if (!errors.isEmpty()) {
+            throw new GradleException("Invalid override manifest ${manifestFile}:\n  " + errors.join('\n  '))
+        }
+        File root = outputDir.get().asFile
+        root.deleteDir()
+        File source = new File(root, javaPackage.get().replace('.', '/') + '/OverrideManifest.java')
+        source.parentFile.mkdirs()
+        source.text = OverrideManifestCompiler.generate(model, javaPackage.get(), manifestFile.name)
+    }
+}
@@ -0,0 +1,167 @@
+/** Validation and code generation for the override manifest; kept free of Gradle types. */
+class OverrideManifestCompiler {
+    static final Set<String> KINDS = ['method', 'constructorFields', 'flagFields', 'property'] as Set
+    /** OverrideTarget kind constant per hook kind; properties go to the PropertyOverrideTable arrays instead. */
+    static final Map<String, String> TARGET_KINDS = [method: 'METHOD', constructorFields: 'CONSTRUCTOR_FIELDS', flagFields: 'FLAG_FIELDS']
+    static final Map<String, String> PROPERTY_GETTERS = [getBoolean: 'BOOLEAN', getInt: 'INT', get: 'STRING']
+    static final Set<String> PRIMITIVES = ['boolean', 'byte', 'char', 'short', 'int', 'long', 'float', 'double'] as Set
+    static final String CONSTANT = /[A-Z][A-Z0-9_]*/
+    static final String IDENTIFIER = /[A-Za-z_$][A-Za-z0-9_$]*/
+    static final String BINARY_NAME = /${IDENTIFIER}(\.${IDENTIFIER})*/
+    static final String PACKAGE_NAME = /[a-z][a-z0-9_]*(\.[a-z0-9_]+)*/
+
+    static List<String> validate(Object model) {
+        List<String> errors = []
+        if (!(model instanceof Map)) return ['manifest root must be an object']
+        def packages = model.packages
+        if (!(packages instanceof Map) || packages.isEmpty()) {
+            errors << "'packages' must be a non-empty object of NAME -> package name"
+            packages = [:]
+        }
+        if (packages.size() > 31) errors << "at most 31 packages are supported, got ${packages.size()}"
+        packages.each { name, packageName ->
+            if (!(name ==~ CONSTANT)) errors << "package key '${name}' must be UPPER_SNAKE_CASE"
+            if (!(packageName instanceof String) || !(packageName ==~ PACKAGE_NAME)) errors << "package ${name}: invalid package name '${packageName}'"
+        }
+        packages.values().countBy { it }.findAll { it.value > 1 }.each { errors << "package '${it.key}' is listed more than once" }
+
+        def targets = model.targets
+        if (!(targets instanceof List) || targets.isEmpty()) return errors << "'targets' must be a non-empty array"
+        Set<String> ids = [] as Set
+        Set<String> propertyKeys = [] as Set
+        Map<String, String> forcedMembers = [:]
+        targets.eachWithIndex { target, i ->
+            if (!(target instanceof Map)) { errors << "targets[${i}] must be an object"; return }
+            String where = target.id instanceof String ? target.id : "targets[${i}]"
+            if (!(target.id instanceof String) || !(target.id ==~ CONSTANT)) errors << "${where}: 'id' must be UPPER_SNAKE_CASE"
+            else if (!ids.add(target.id)) errors << "${where}: duplicate id"
+            if (!KINDS.contains(target.kind)) { errors << "${where}: 'kind' must be one of ${KINDS}"; return }
+
+            def targetPackages = target.packages
+            if (!(targetPackages instanceof List) || targetPackages.isEmpty()) errors << "${where}: 'packages' must be a non-empty array"
+            else targetPackages.findAll { !packages.containsKey(it) }.each { errors << "${where}: unknown package '${it}'" }
+
+            if (target.kind == 'property') {
+                validateProperty(target, where, propertyKeys, errors)
+                return
+            }
+            if (!(target['class'] instanceof String) || !(target['class'] ==~ BINARY_NAME)) errors << "${where}: invalid 'class'"
+            if (target.kind == 'flagFields') {
+                if (target.containsKey('params')) errors << "${where}: flagFields targets take no 'params'"
+            } else if (!(target.params instanceof List)) {
+                errors << "${where}: 'params' must be an array"
+            } else {
+                target.params.findAll { !(it instanceof String) || !(PRIMITIVES.contains(it) || it ==~ BINARY_NAME) }
+                        .each { errors << "${where}: invalid parameter type '${it}'" }
+            }
+            def forceTrue = target.forceTrue ?: []
+            def forceFalse = target.forceFalse ?: []
+            if (!(forceTrue instanceof List) || !(forceFalse instanceof List)) { errors << "${where}: 'forceTrue'/'forceFalse' must be arrays"; return }
+            if (forceTrue.isEmpty() && forceFalse.isEmpty()) errors << "${where}: no members in 'forceTrue' or 'forceFalse'"
+            (forceTrue + forceFalse).findAll { !(it instanceof String) || !(it ==~ IDENTIFIER) }.each { errors << "${where}: invalid member name '${it}'" }
+            (forceTrue + forceFalse).countBy { it }.findAll { it.value > 1 }.each { errors << "${where}: member '${it.key}' is listed more than once across forceTrue/forceFalse" }
+            // Two targets hooking the same member would race for its value at runtime.
+            String signature = target.params instanceof List ? "(${target.params.join(', ')})" : ''
+            (forceTrue + forceFalse).unique().each { member ->
+                String key = target.kind == 'method' ? "${target['class']}#${member}${signature}" : "${target['class']}.${member}"
+                String owner = forcedMembers.putIfAbsent(key, where)
+                if (owner != null) errors << "${where}: ${key} is already forced by ${owner}"
+            }
+        }
+        return errors
+    }
+
+    private static void validateProperty(Map target, String where, Set<String> propertyKeys, List<String> errors) {
+        String type = PROPERTY_GETTERS[target.getter]
+        if (type == null) { errors << "${where}: 'getter' must be one of ${PROPERTY_GETTERS.keySet()}"; return }
+        if (!(target.key instanceof String) || target.key.isEmpty()) errors << "${where}: 'key' must be a non-empty string"
+        else if (!propertyKeys.add(target.getter + ' ' + target.key)) errors << "${where}: ${target.getter}(${target.key}) is overridden twice"
+        def value = target.value
+        boolean valueMatches = (type == 'BOOLEAN' && value instanceof Boolean) ||
+                (type == 'INT' && value instanceof Integer) ||
+                (type == 'STRING' && value instanceof String)
+        if (!valueMatches) errors << "${where}: 'value' ${value} does not match ${target.getter}"
+    }
+
+    static String generate(Map model, String javaPackage, String sourceName) {
+        Map<String, String> packages = model.packages
+        List<String> packageNames = packages.keySet() as List
+        def packageMask = { List<String> names -> names.collect { "PACKAGE_${it}" }.join(' | ') }
+
+        def out = new StringBuilder()
+        out << "// Generated from ${sourceName} by the compileOverrideManifest task. Do not edit.\n"
+        out << "package ${javaPackage};\n\n"
+        out << "final class OverrideManifest {\n"
+        out << "    private OverrideManifest() {}\n\n"
+        out << "    // --- Target packages, one bit each ---\n"
+        packageNames.eachWithIndex { name, i -> out << "    static final int PACKAGE_${name} = 1 << ${i};\n" }
+        out << "\n    static int packageBit(String packageName) {\n"
+        out << "        switch (packageName) {\n"
+        packages.each { name, packageName -> out << "            case ${quote(packageName)}: return PACKAGE_${name};\n" }
+        out << "            default: return 0;\n"
+        out << "        }\n"
+        out << "    }\n"
+
+        // Every forced member and property gets one bit, numbered in manifest order; OverrideProfile files index by it.
+        List<String> overrideNames = []
+        Map<Object, List<Integer>> forceTrueBits = [:]
+        Map<Object, List<Integer>> forceFalseBits = [:]
+        Map<Object, Integer> propertyBits = [:]
+        model.targets.each { target ->
+            if (target.kind == 'property') {
+                propertyBits[target.id] = overrideNames.size()
+                overrideNames << target.id
+                return
+            }
+            forceTrueBits[target.id] = (target.forceTrue ?: []).collect { overrideNames << "${target.id}.${it}".toString(); overrideNames.size() - 1 }
+            forceFalseBits[target.id] = (target.forceFalse ?: []).collect { overrideNames << "${target.id}.${it}".toString(); overrideNames.size() - 1 }
+        }
+        out << "\n    // --- Override bits, in manifest order ---\n"
+        out << "    static final int OVERRIDE_COUNT = ${overrideNames.size()};\n"
+        out << "    static final String[] OVERRIDE_NAMES = {"
+        out << overrideNames.collect { "\n            ${quote(it)}" }.join(',')
+        out << "\n    };\n"
+
+        def properties = model.targets.findAll { it.kind == 'property' }
+        def hookTargets = model.targets.findAll { it.kind != 'property' }
+        out << "\n    // --- Hook targets, in manifest order; MainHook installs each according to its kind ---\n"
+        List<String> targetPackages = hookTargets.collectMany { it.packages }.unique()
+        out << "    static final int TARGET_PACKAGES = ${targetPackages.isEmpty() ? '0' : packageMask(targetPackages)};\n"
+        out << "    static final OverrideTarget[] TARGETS = {"
+        out << hookTargets.collect { target ->
+            // Type names, not class literals: the hooks resolve them against the hooked package's class loader.
+            String params = target.kind == 'flagFields' ? 'null' : "new String[] ${stringArray(target.params)}"
+            "\n            new OverrideTarget(${quote(target.id)}, OverrideTarget.${TARGET_KINDS[target.kind]}, ${quote(target['class'])}, ${params},\n" +
+                    "                    new String[] ${stringArray(target.forceTrue ?: [])}, new int[] {${forceTrueBits[target.id].join(', ')}},\n" +
+                    "                    new String[] ${stringArray(target.forceFalse ?: [])}, new int[] {${forceFalseBits[target.id].join(', ')}},\n" +
+                    "                    ${packageMask(target.packages)})"
+        }.join(',')
+        out << (hookTargets.isEmpty() ? "};\n" : "\n    };\n")
+
+        out << "\n    // --- SystemProperties overrides, per getter ---\n"
+        List<String> propertyPackages = properties.collectMany { it.packages }.unique()
+        out << "    static final int PROPERTY_PACKAGES = ${propertyPackages.isEmpty() ? '0' : packageMask(propertyPackages)};\n"
+        PROPERTY_GETTERS.each { getter, type ->
+            List<Map> forGetter = properties.findAll { it.getter == getter }
+            // The separating comma goes before the trailing id comment, or the comment would swallow it.
+            def entries = forGetter.withIndex().collect { p, i ->
+                String value = p.value instanceof String ? quote(p.value) : String.valueOf(p.value)
+                String separator = i < forGetter.size() - 1 ? ',' : ''
+                "\n            new PropertyOverrideTable.Entry(${quote(p.key)}, ${value}, ${packageMask(p.packages)}, ${propertyBits[p.id]})${separator} // ${p.id}"
+            }
+            out << "    static final PropertyOverrideTable.Entry[] ${type}_PROPERTY_OVERRIDES = {"
+            out << entries.join('')
+            out << (entries.isEmpty() ? "};\n" : "\n    };\n")
+        }
+        out << "}\n"
+        return out.toString()
+    }
+
+    private static String stringArray(List<String> values) {
+        return '{' + values.collect { quote(it) }.join(', ') + '}'
+    }
+
+    private static String quote(String value) {
+        return '"' + value.replace('\\', '\\\\').replace('"', '\\"') + '"'
+    }
+}
@@ -0,0 +1,149 @@
+import static org.junit.Assert.assertEquals
+import static org.junit.Assert.assertTrue
+
+import groovy.json.JsonSlurper
+import org.junit.Test
+
+class OverrideManifestCompilerTest {
+    private static Map manifest(List targets) {
+        return [packages: [SYSTEMUI: 'com.android.systemui', LAUNCHER: 'com.google.android.apps.nexuslauncher'], targets: targets]
+    }
+
+    private static Map method(Map overrides = [:]) {
+        return [id: 'STATUS', kind: 'method', 'class': 'com.example.Status', params: ['android.content.Context', 'int'],
+                forceTrue: ['isSupported'], forceFalse: ['isRestricted'], packages: ['SYSTEMUI']] + overrides
+    }
+
+    private static Map property(Map overrides = [:]) {
+        return [id: 'RESTRICTIONS', kind: 'property', getter: 'getBoolean', key: 'persist.example.restrictions',
+                value: false, packages: ['SYSTEMUI', 'LAUNCHER']] + overrides
+    }
+
+    private static void assertErrors(Object model, String... expected) {
+        assertEquals(expected as List, OverrideManifestCompiler.validate(model)*.toString())
+    }
+
+    @Test
+    void acceptsTheModuleManifest() {
+        assertErrors(new JsonSlurper().parse(new File('../app/overrides.json')) as Map)
+    }
+
+    @Test
+    void acceptsEveryKind() {
+        assertErrors(manifest([method(), property(),
+                method(id: 'FIELDS', kind: 'constructorFields'),
+                [id: 'FLAGS', kind: 'flagFields', 'class': 'com.example.Flags', forceTrue: ['ENABLE_X'], packages: ['LAUNCHER']]]))
+    }
+
+    @Test
+    void rejectsBadPackages() {
+        assertErrors([packages: [systemui: 'com.android.systemui', OTHER: 'com.android.systemui', BAD: 'Not A Package'], targets: [method(packages: ['SYSTEMUI'])]],
+                "package key 'systemui' must be UPPER_SNAKE_CASE",
+                "package BAD: invalid package name 'Not A Package'",
+                "package 'com.android.systemui' is listed more than once",
+                "STATUS: unknown package 'SYSTEMUI'")
+    }
+
+    @Test
+    void rejectsMoreThan31Packages() {
+        Map packages = (0..31).collectEntries { ["P${it}".toString(), "com.example.p${it}".toString()] }
+        assertErrors([packages: packages, targets: [method(packages: ['P0'])]], 'at most 31 packages are supported, got 32')
+    }
+
+    @Test
+    void rejectsBadIdsAndKinds() {
+        assertErrors(manifest([method(), method('class': 'com.example.Second'), method(id: 'lower', 'class': 'com.example.Third'),
+                method(id: 'OTHER', kind: 'field')]),
+                'STATUS: duplicate id',
+                "lower: 'id' must be UPPER_SNAKE_CASE",
+                "OTHER: 'kind' must be one of [method, constructorFields, flagFields, property]")
+    }
+
+    @Test
+    void rejectsBadClassesParamsAndMembers() {
+        assertErrors(manifest([
+                method(id: 'A', 'class': 'com.example.Bad Name', params: ['int', 'java.lang.String[]', 7]),
+                method(id: 'B', params: null),
+                method(id: 'C', forceTrue: [], forceFalse: []),
+                method(id: 'D', forceTrue: ['isX', 'is-y'], forceFalse: ['isX']),
+                [id: 'E', kind: 'flagFields', 'class': 'com.example.Flags', params: [], forceTrue: ['ENABLE_X'], packages: ['SYSTEMUI']]]),
+                "A: invalid 'class'",
+                "A: invalid parameter type 'java.lang.String[]'",
+                "A: invalid parameter type '7'",
+                "B: 'params' must be an array",
+                "C: no members in 'forceTrue' or 'forceFalse'",
+                "D: invalid member name 'is-y'",
+                "D: member 'isX' is listed more than once across forceTrue/forceFalse",
+                "E: flagFields targets take no 'params'")
+    }
+
+    @Test
+    void rejectsMembersForcedByTwoTargets() {
+        assertErrors(manifest([method(), method(id: 'OVERLOAD', params: []),
+                method(id: 'AGAIN', forceTrue: ['isRestricted'], forceFalse: []),
+                [id: 'FLAGS', kind: 'flagFields', 'class': 'com.example.Flags', forceTrue: ['ENABLE_X'], packages: ['SYSTEMUI']],
+                [id: 'MORE_FLAGS', kind: 'flagFields', 'class': 'com.example.Flags', forceFalse: ['ENABLE_X', 'ENABLE_Y'], packages: ['LAUNCHER']]]),
+                'AGAIN: com.example.Status#isRestricted(android.content.Context, int) is already forced by STATUS',
+                'MORE_FLAGS: com.example.Flags.ENABLE_X is already forced by FLAGS')
+    }
+
+    @Test
+    void rejectsBadProperties() {
+        assertErrors(manifest([property(), property(id: 'AGAIN'), property(id: 'INT', getter: 'getInt', value: 'one'),
+                property(id: 'GETTER', getter: 'getLong'), property(id: 'KEY', key: '')]),
+                'AGAIN: getBoolean(persist.example.restrictions) is overridden twice',
+                "INT: 'value' one does not match getInt",
+                "GETTER: 'getter' must be one of [getBoolean, getInt, get]",
+                "KEY: 'key' must be a non-empty string")
+    }
+
+    @Test
+    void rejectsMissingTargets() {
+        assertErrors([packages: [SYSTEMUI: 'com.android.systemui'], targets: []], "'targets' must be a non-empty array")
+        assertErrors([], 'manifest root must be an object')
+    }
+
+    @Test
+    void generatesPackageBitsOverrideBitsAndTargets() {
+        Map flags = [id: 'FLAGS', kind: 'flagFields', 'class': 'com.example.Flags', forceTrue: ['ENABLE_X'], packages: ['LAUNCHER']]
+        String source = OverrideManifestCompiler.generate(manifest([method(), property(), flags]), 'com.example', 'overrides.json')
+        assertTrue(source.startsWith('// Generated from overrides.json by the compileOverrideManifest task. Do not edit.\npackage com.example;\n'))
+        assertContains(source, '    static final int PACKAGE_SYSTEMUI = 1 << 0;\n    static final int PACKAGE_LAUNCHER = 1 << 1;\n')
+        assertContains(source, '            case "com.google.android.apps.nexuslauncher": return PACKAGE_LAUNCHER;\n')
+        assertContains(source, '    static final int OVERRIDE_COUNT = 4;\n    static final String[] OVERRIDE_NAMES = {\n' +
+                '            "STATUS.isSupported",\n            "STATUS.isRestricted",\n            "RESTRICTIONS",\n            "FLAGS.ENABLE_X"\n    };\n')
+        assertContains(source, '    static final int TARGET_PACKAGES = PACKAGE_SYSTEMUI | PACKAGE_LAUNCHER;\n')
+        assertContains(source, '    static final OverrideTarget[] TARGETS = {\n' +
+                '            new OverrideTarget("STATUS", OverrideTarget.METHOD, "com.example.Status", new String[] {"android.content.Context", "int"},\n' +
+                '                    new String[] {"isSupported"}, new int[] {0},\n' +
+                '                    new String[] {"isRestricted"}, new int[] {1},\n' +
+                '                    PACKAGE_SYSTEMUI),\n' +
+                '            new OverrideTarget("FLAGS", OverrideTarget.FLAG_FIELDS, "com.example.Flags", null,\n' +
+                '                    new String[] {"ENABLE_X"}, new int[] {3},\n' +
+                '                    new String[] {}, new int[] {},\n' +
+                '                    PACKAGE_LAUNCHER)\n    };\n')
+        assertContains(source, '    static final int PROPERTY_PACKAGES = PACKAGE_SYSTEMUI | PACKAGE_LAUNCHER;\n')
+        assertContains(source, '    static final PropertyOverrideTable.Entry[] BOOLEAN_PROPERTY_OVERRIDES = {\n' +
+                '            new PropertyOverrideTable.Entry("persist.example.restrictions", false, PACKAGE_SYSTEMUI | PACKAGE_LAUNCHER, 2) // RESTRICTIONS\n    };\n')
+        assertContains(source, '    static final PropertyOverrideTable.Entry[] INT_PROPERTY_OVERRIDES = {};\n')
+    }
+
+    @Test
+    void separatesPropertiesSharingAGetterBeforeTheirComments() {
+        String source = OverrideManifestCompiler.generate(manifest([property(),
+                property(id: 'DENSITY', key: 'persist.example.density', value: true, packages: ['SYSTEMUI'])]), 'com.example', 'overrides.json')
+        assertContains(source, '    static final PropertyOverrideTable.Entry[] BOOLEAN_PROPERTY_OVERRIDES = {\n' +
+                '            new PropertyOverrideTable.Entry("persist.example.restrictions", false, PACKAGE_SYSTEMUI | PACKAGE_LAUNCHER, 0), // RESTRICTIONS\n' +
+                '            new PropertyOverrideTable.Entry("persist.example.density", true, PACKAGE_SYSTEMUI, 1) // DENSITY\n    };\n')
+    }
+
+    @Test
+    void keepsNestedClassNamesBinary() {
+        String source = OverrideManifestCompiler.generate(manifest([method(params: ['com.example.Outer$Inner'])]), 'com.example', 'overrides.json')
+        assertContains(source, 'new OverrideTarget("STATUS", OverrideTarget.METHOD, "com.example.Status", new String[] {"com.example.Outer$Inner"},\n')
+    }
+
+    private static void assertContains(String source, String expected) {
+        assertTrue("expected\n" + expected + "in\n" + source, source.contains(expected))
+    }
+}